@@ -1,6 +1,7 @@
 plugins {
 	id("java")
 	id("maven-publish")
+	id("me.champeau.jmh") version "0.7.2"
 }
 
 group 	                = "com.ronreynolds"
@@ -9,6 +10,7 @@ version                 = "1.0.2"
 val assertJVersion      = "3.27.3"		// 2025-01-18
 val jUnitJupiterVersion = "5.12.0"      // 2025-02-21
 val slf4jVersion        = "2.0.17"      // 2025-02-25
+val jmhCoreVersion      = "1.37"        // 2023-08-07
 
 java {
 	sourceCompatibility = JavaVersion.VERSION_11
@@ -23,6 +25,7 @@ repositories {
 dependencies {
 	implementation    ("org.slf4j:slf4j-api:$slf4jVersion")
     implementation    ("org.assertj:assertj-core:$assertJVersion")
+	compileOnly       ("org.junit.jupiter:junit-jupiter-api:$jUnitJupiterVersion")	// TestLoggerExtension; users' tests provide it
 	testImplementation("org.junit.jupiter:junit-jupiter:$jUnitJupiterVersion")
 	testRuntimeOnly   ("org.junit.platform:junit-platform-launcher")
 }
@@ -31,6 +34,23 @@ tasks.compileJava {
 	options.encoding = "UTF-8"
 }
 
+// Java 21 versions of classes in src/main/java (e.g. ThreadIdentity, which knows about virtual threads); packaged in the jar's
+// META-INF/versions/21 so Java 21+ loads them while Java 11-20 use the originals (the Java 11 baseline is unchanged)
+val java21: SourceSet by sourceSets.creating {
+	java.srcDir("src/main/java21")
+}
+
+tasks.named<JavaCompile>("compileJava21Java") {
+	javaCompiler.set(javaToolchains.compilerFor { languageVersion.set(JavaLanguageVersion.of(21)) })
+	options.release.set(21)
+	options.encoding = "UTF-8"
+}
+
+tasks.jar {
+	into("META-INF/versions/21") { from(java21.output) }
+	manifest { attributes("Multi-Release" to "true") }
+}
+
 tasks.compileTestJava {
     options.encoding = "UTF-8"
 }
@@ -39,6 +59,31 @@ tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+// the tests again on Java 21 against the multi-release jar (the classes directory isn't multi-release) so the Java 21
+// classes are tested too; part of `check`
+val testJava21 by tasks.registering(Test::class) {
+	javaLauncher.set(javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(21)) })
+	testClassesDirs = sourceSets.test.get().output.classesDirs
+	classpath = files(tasks.jar) + sourceSets.test.get().runtimeClasspath - sourceSets.main.get().output
+}
+
+tasks.check {
+	dependsOn(testJava21)
+}
+
+// benchmarks live in src/jmh/java; run with `./gradlew jmh` (optionally `-PjmhIncludes=<regex>` to run a subset).
+// results are written as JSON so runs from different releases can be compared (e.g. with jmh.morethan.io)
+jmh {
+	jmhVersion.set(jmhCoreVersion)
+	resultFormat.set("JSON")
+	resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+	(findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+}
+
+tasks.named<JavaCompile>("compileJmhJava") {
+	options.encoding = "UTF-8"
+}
+
 publishing {
 	publications {
 		create<MavenPublication>("maven") {
@@ -0,0 +1,51 @@
+package com.ronreynolds.test.logging;
+
+import java.lang.reflect.Field;
+import org.slf4j.MDC;
+import org.slf4j.helpers.BasicMDCAdapter;
+import org.slf4j.helpers.NOPMDCAdapter;
+
+/**
+ * helpers shared by the benchmarks
+ */
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * without an slf4j provider the MDC is a no-op; force in the basic adapter (same trick as TestLoggerTest) so MDC costs are real
+     */
+    static void installBasicMdcAdapter() {
+        if (!(MDC.getMDCAdapter() instanceof NOPMDCAdapter)) {
+            return;
+        }
+        try {
+            Field mdcAdapter;
+            try {
+                mdcAdapter = MDC.class.getDeclaredField("MDC_ADAPTER");  // 2.0.17
+            } catch (NoSuchFieldException fnf) {
+                mdcAdapter = MDC.class.getDeclaredField("mdcAdapter");   // 2.0.16 and before used "mdcAdapter"
+            }
+            mdcAdapter.setAccessible(true);
+            mdcAdapter.set(null, new BasicMDCAdapter());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("unable to install BasicMDCAdapter", e);
+        }
+    }
+
+    /**
+     * logs {@code eventCount} events to {@code log} (80% INFO, 15% WARN, 5% ERROR)
+     */
+    static void fill(TestLogger log, int eventCount) {
+        for (int i = 0; i < eventCount; ++i) {
+            int bucket = i % 20;
+            if (bucket == 0) {
+                log.error("error event {}", i);
+            } else if (bucket <= 3) {
+                log.warn("warn event {} of {}", i, eventCount);
+            } else {
+                log.info("info event {}", i);
+            }
+        }
+    }
+}
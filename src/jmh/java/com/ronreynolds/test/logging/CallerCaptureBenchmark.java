@@ -0,0 +1,43 @@
+package com.ronreynolds.test.logging;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cost of capturing an event with each {@code CallerCapture} setting (the stack walked is JMH's plus the logger's)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CallerCaptureBenchmark {
+    @Param({"off", "sampled", "always"})
+    public String callerCapture;
+
+    private TestLogger log;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void createLogger() {
+        CallerCapture capture = "off".equals(callerCapture) ? CallerCapture.off()
+                : "sampled".equals(callerCapture) ? CallerCapture.sampled(100) : CallerCapture.always();
+        // bounded so the benchmark measures capture rather than heap growth
+        log = new TestLogger("bench.caller").setRetentionPolicy(RetentionPolicy.lastEvents(1 << 16)).setCallerCapture(capture);
+    }
+
+    @Benchmark
+    public void info() {
+        log.info("captured event {}", 42);
+    }
+}
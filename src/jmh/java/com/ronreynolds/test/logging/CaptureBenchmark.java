@@ -0,0 +1,88 @@
+package com.ronreynolds.test.logging;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cost of capturing an event (AbstractLogger.info() -> handleNormalizedLoggingCall() -> addEvent()) from one thread and from
+ * every core at once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CaptureBenchmark {
+    private static final Throwable THROWN = new IllegalStateException("benchmark");
+
+    @Param({"unbounded", "compact", "lastEvents"})
+    public String retention;
+
+    private TestLogger log;
+    // DEBUG enabled but (after its first event) every call skipped by its capture policy
+    private TestLogger skippingLog;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void createLogger() {
+        RetentionPolicy retentionPolicy;
+        switch (retention) {
+            case "unbounded":
+                retentionPolicy = RetentionPolicy.unbounded();
+                break;
+            case "compact":
+                retentionPolicy = RetentionPolicy.compact();
+                break;
+            default:
+                retentionPolicy = RetentionPolicy.lastEvents(1 << 16);
+        }
+        log = new TestLogger("bench.capture").setRetentionPolicy(retentionPolicy);
+        skippingLog = new TestLogger("bench.capture.skipping").setLogLevel(org.slf4j.event.Level.DEBUG)
+                                                               .setRetentionPolicy(retentionPolicy)
+                                                               .setCapturePolicy(CapturePolicy.sampled(Integer.MAX_VALUE));
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void resetLogger() {
+        // keeps the unbounded store from growing across iterations
+        log.reset();
+        skippingLog.reset();
+    }
+
+    @Benchmark
+    public void info() {
+        log.info("captured event {}", 42);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void infoContended() {
+        log.info("captured event {}", 42);
+    }
+
+    @Benchmark
+    public void infoWithThrowable() {
+        log.info("captured event {}", 42, THROWN);
+    }
+
+    @Benchmark
+    public void disabledDebug() {
+        log.debug("not captured {}", 42);
+    }
+
+    @Benchmark
+    public void skippedDebug() {
+        skippingLog.debug("skipped by the capture policy {} {}", 42, 43);
+    }
+}
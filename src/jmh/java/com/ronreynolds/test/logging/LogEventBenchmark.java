@@ -0,0 +1,99 @@
+package com.ronreynolds.test.logging;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * cost of constructing a {@code LogEvent} (with and without MDC, args, and a throwable) and of formatting its message
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogEventBenchmark {
+    private static final String LOGGER_NAME = "bench.event";
+    private static final String TEMPLATE = "user {} logged in from {} after {} attempts";
+    private static final Throwable THROWN = new IllegalStateException("benchmark");
+
+    private final Object[] args = {"alice", "10.0.0.1", 3};
+    private final Object[] argsWithThrowable = {"alice", "10.0.0.1", 3, THROWN};
+    private LogEvent formattedEvent;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.installBasicMdcAdapter();
+        formattedEvent = new LogEvent(Level.INFO, LOGGER_NAME, null, TEMPLATE, args, null);
+        formattedEvent.getFormattedMessage();
+    }
+
+    @TearDown
+    public void tearDown() {
+        MDC.clear();
+    }
+
+    @Benchmark
+    public LogEvent plain() {
+        MDC.clear();
+        return new LogEvent(Level.INFO, LOGGER_NAME, null, "plain message", null, null);
+    }
+
+    @Benchmark
+    public LogEvent withArgs() {
+        MDC.clear();
+        return new LogEvent(Level.INFO, LOGGER_NAME, null, TEMPLATE, args, null);
+    }
+
+    @Benchmark
+    public LogEvent withThrowableLastArg() {
+        MDC.clear();
+        return new LogEvent(Level.ERROR, LOGGER_NAME, null, TEMPLATE, argsWithThrowable, null);
+    }
+
+    @Benchmark
+    public LogEvent withUnchangedMdc() {
+        if (MDC.get("requestId") == null) {
+            MDC.put("requestId", "abc-123");
+            MDC.put("tenant", "42");
+        }
+        return new LogEvent(Level.INFO, LOGGER_NAME, null, TEMPLATE, args, null);
+    }
+
+    @Benchmark
+    public LogEvent withChangingMdc() {
+        MDC.put("requestId", Integer.toString(++counter & 0xFF));
+        MDC.put("tenant", "42");
+        return new LogEvent(Level.INFO, LOGGER_NAME, null, TEMPLATE, args, null);
+    }
+
+    @Benchmark
+    public String formatMessageTemplate() {
+        return MessageTemplate.format(TEMPLATE, args);
+    }
+
+    @Benchmark
+    public String formatMessageFormatter() {
+        // baseline: what getFormattedMessage() used to do on every call
+        return MessageFormatter.arrayFormat(TEMPLATE, args).getMessage();
+    }
+
+    @Benchmark
+    public String getFormattedMessageMemoized() {
+        return formattedEvent.getFormattedMessage();
+    }
+}
@@ -0,0 +1,91 @@
+package com.ronreynolds.test.logging;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.event.Level;
+
+/**
+ * cost of reading captured events back out (per-logger, across loggers, via {@code EventQuery}, and through
+ * {@code LogEventListAssert})
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class QueryBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int eventCount;
+
+    private TestLogger log;
+
+    @Setup
+    public void setup() {
+        log = TestLogger.getLogger("bench.query");
+        BenchmarkSupport.fill(log, eventCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        TestLogger.resetAll();
+    }
+
+    @Benchmark
+    public List<LogEvent> getAllEvents() {
+        return log.getAllEvents();
+    }
+
+    @Benchmark
+    public List<LogEvent> getEventsAtLevel() {
+        return log.getEventsAtLevel(Level.INFO);
+    }
+
+    @Benchmark
+    public List<LogEvent> getAllEventsAtLevel() {
+        return TestLogger.getAllEventsAtLevel(Level.WARN);
+    }
+
+    @Benchmark
+    public EventStatistics getAllEventStatistics() {
+        return TestLogger.getAllEventStatistics();
+    }
+
+    @Benchmark
+    public long filterErrorsOnThread() {
+        String threadName = Thread.currentThread().getName();
+        return TestLogger.getAllEventsAtLevel(Level.ERROR).stream()
+                         .filter(event -> threadName.equals(event.getThreadName()))
+                         .count();
+    }
+
+    @Benchmark
+    public long queryErrorsOnThread() {
+        return TestLogger.query().atLevel(Level.ERROR).onThread(Thread.currentThread().getName()).count();
+    }
+
+    @Benchmark
+    public void listAssertTraversal(Blackhole blackhole) {
+        LogEventListAssert.assertThat(log, Level.WARN)
+                          .hasSize(eventCount * 3 / 20)
+                          .allSatisfy(event -> blackhole.consume(event.getMessage()));
+    }
+
+    @Benchmark
+    public LogEventAssert listAssertLast() {
+        return LogEventListAssert.assertThat(log, Level.ERROR).last().hasMessageTemplate("error event {}");
+    }
+}
@@ -0,0 +1,315 @@
+package com.ronreynolds.test.logging;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * an on-event callback that moves the real (batch) consumer off the logging thread so a slow consumer doesn't change the timing
+ * of the code under test; pass it to {@code TestLogger.setOnEvent()} or {@code TestLogger.setOnAllEvents()}.
+ * <p>
+ * events are queued in a bounded lock-free multi-producer/single-consumer ring and a daemon thread delivers them to the batch
+ * consumer in the order they were queued; call {@link #flush()} before asserting on what the consumer saw. anything the batch
+ * consumer throws (e.g. a failed assertion) is recorded and rethrown by the next {@code flush()} while dispatching carries on.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ List&lt;LogEvent&gt; seen = Collections.synchronizedList(new ArrayList&lt;&gt;());
+ var dispatcher = AsyncEventDispatcher.of(seen::addAll);
+ log.setOnEvent(dispatcher);
+ try {
+    codeUnderTest();
+    dispatcher.flush();
+    assertThat(seen).hasSize(42);
+ } finally {
+    log.setOnEvent(null);   // before closing; events logged after close() are only counted as dropped
+    dispatcher.close();
+ }
+ </pre>
+ @formatter:on
+ */
+public final class AsyncEventDispatcher implements Consumer<LogEvent>, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * what the logging thread does when the queue is full
+     */
+    public enum Backpressure {
+        /** wait for the dispatcher to make room */
+        BLOCK,
+        /** discard the event (see {@link #getDroppedCount()}) */
+        DROP,
+        /** deliver the event to the batch consumer on the logging thread (so the consumer must be thread-safe) */
+        CALLER_RUNS
+    }
+
+    private final Consumer<List<LogEvent>> batchConsumer;
+    private final int maxBatchSize;
+    private final Backpressure backpressure;
+    private final int mask;
+    // Vyukov-style bounded queue: each cell's sequence says whether it's free for position p (== p) or full (== p + 1)
+    private final AtomicReferenceArray<LogEvent> cells;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private long dequeuePosition; // only touched by the dispatcher thread
+    // events taken from the queue and delivered (compared with enqueuePosition to know when the queue is drained)
+    private final AtomicLong dequeuedCount = new AtomicLong();
+    // events delivered on the logging thread (CALLER_RUNS or logging from within the batch consumer)
+    private final AtomicLong callerRunsCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    // accept() calls in progress; the dispatcher keeps running after close until they've all finished
+    private final AtomicInteger producers = new AtomicInteger();
+    private final AtomicReference<Throwable> consumerFailure = new AtomicReference<>();
+    private final Thread dispatcherThread;
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    /**
+     * creates a dispatcher with the default capacity, batch size, and {@code BLOCK} backpressure
+     */
+    public static AsyncEventDispatcher of(Consumer<List<LogEvent>> batchConsumer) {
+        return new AsyncEventDispatcher(batchConsumer, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, Backpressure.BLOCK);
+    }
+
+    /**
+     * @param batchConsumer receives the events in the order they were queued; the lists are immutable
+     * @param capacity the number of events that can be queued (rounded up to a power of 2)
+     * @param maxBatchSize the maximum number of events passed to a single {@code batchConsumer.accept()}
+     * @param backpressure what to do when an event arrives and the queue is full
+     */
+    public AsyncEventDispatcher(Consumer<List<LogEvent>> batchConsumer, int capacity, int maxBatchSize, Backpressure backpressure) {
+        this.batchConsumer = Objects.requireNonNull(batchConsumer, "batchConsumer can not be null");
+        this.backpressure = Objects.requireNonNull(backpressure, "backpressure can not be null");
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30: " + capacity);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.cells = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i) {
+            sequences.set(i, i);
+        }
+        this.dispatcherThread = new Thread(this::dispatchLoop, "TestLogger-dispatcher-" + threadCount.incrementAndGet());
+        this.dispatcherThread.setDaemon(true);
+        this.dispatcherThread.start();
+    }
+
+    /**
+     * queues the event for the batch consumer (or applies the backpressure policy if the queue is full)
+     */
+    @Override
+    public void accept(LogEvent event) {
+        // counted as in flight before the closed check so the dispatcher doesn't exit while our event may still be queued
+        producers.incrementAndGet();
+        try {
+            if (closed) {
+                // the logger may outlive the dispatcher; losing the event is better than failing the code under test
+                droppedCount.incrementAndGet();
+                return;
+            }
+            if (Thread.currentThread() == dispatcherThread) {
+                // the batch consumer is logging; waiting for ourselves to make room would never end
+                deliver(List.of(event), callerRunsCount);
+                return;
+            }
+            int attempt = 0;
+            while (!offer(event)) {
+                switch (backpressure) {
+                    case DROP:
+                        droppedCount.incrementAndGet();
+                        return;
+                    case CALLER_RUNS:
+                        deliver(List.of(event), callerRunsCount);
+                        return;
+                    default:
+                        checkDispatching();
+                        attempt = SpinWait.backoff(attempt);
+                }
+            }
+            if (idle) {
+                LockSupport.unpark(dispatcherThread);
+            }
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    /**
+     * waits until every event queued before this call has been delivered to the batch consumer; rethrows (once) the first
+     * exception or error thrown by the batch consumer
+     * @throws IllegalStateException if the dispatcher thread stopped (e.g. the dispatcher was closed) before delivering them
+     */
+    public void flush() {
+        long target = enqueuePosition.get();
+        int attempt = 0;
+        while (dequeuedCount.get() < target) {
+            checkDispatching();
+            attempt = SpinWait.backoff(attempt);
+        }
+        rethrowConsumerFailure();
+    }
+
+    /**
+     * waits until the queue is empty and the batch consumer isn't running (or {@code timeout} elapses)
+     * @return {@code true} if the dispatcher is quiescent; {@code false} if the timeout elapsed (or the dispatcher thread
+     * stopped) first
+     */
+    public boolean awaitQuiescence(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int attempt = 0;
+        while (dequeuedCount.get() < enqueuePosition.get()) {
+            if (System.nanoTime() - deadline >= 0 || !dispatcherThread.isAlive()) {
+                return false;
+            }
+            attempt = SpinWait.backoff(attempt);
+        }
+        rethrowConsumerFailure();
+        return true;
+    }
+
+    /**
+     * the number of events discarded by the {@code DROP} backpressure policy or because they arrived after {@link #close()}
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * the number of events delivered to the batch consumer
+     */
+    public long getDeliveredCount() {
+        return dequeuedCount.get() + callerRunsCount.get();
+    }
+
+    /**
+     * delivers the events already queued (including any queued while closing) then stops the dispatcher thread; events
+     * arriving afterward are discarded and counted by {@link #getDroppedCount()} (so remove the dispatcher with
+     * {@code setOnEvent(null)} first). rethrows the batch consumer's failure as {@link #flush()} does
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(dispatcherThread);
+        if (Thread.currentThread() != dispatcherThread) {
+            // the dispatcher drains the queue before it exits
+            boolean interrupted = false;
+            while (dispatcherThread.isAlive()) {
+                try {
+                    dispatcherThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        rethrowConsumerFailure();
+    }
+
+    private boolean offer(LogEvent event) {
+        while (true) {
+            long pos = enqueuePosition.get();
+            int cell = (int) pos & mask;
+            long diff = sequences.get(cell) - pos;
+            if (diff == 0) {
+                if (enqueuePosition.compareAndSet(pos, pos + 1)) {
+                    cells.set(cell, event);
+                    sequences.set(cell, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false; // full
+            }
+            // else another producer took this position; try the next one
+        }
+    }
+
+    private LogEvent poll() {
+        int cell = (int) dequeuePosition & mask;
+        if (sequences.get(cell) != dequeuePosition + 1) {
+            return null; // empty (or the producer hasn't published yet)
+        }
+        LogEvent event = cells.get(cell);
+        cells.set(cell, null);
+        sequences.set(cell, dequeuePosition + mask + 1);
+        ++dequeuePosition;
+        return event;
+    }
+
+    private void dispatchLoop() {
+        List<LogEvent> batch = new ArrayList<>(Math.min(maxBatchSize, mask + 1));
+        // once closed keep going until every producer that got past the closed check has finished and its event is delivered
+        while (!closed || producers.get() > 0 || dequeuePosition < enqueuePosition.get()) {
+            LogEvent event;
+            while (batch.size() < maxBatchSize && (event = poll()) != null) {
+                batch.add(event);
+            }
+            if (!batch.isEmpty()) {
+                deliver(Collections.unmodifiableList(batch), dequeuedCount);
+                batch = new ArrayList<>(Math.min(maxBatchSize, mask + 1));
+                continue;
+            }
+            if (closed) {
+                Thread.onSpinWait();    // a producer is still in accept() or hasn't yet published the cell it reserved
+                continue;
+            }
+            idle = true;
+            // re-check after advertising we're idle so a producer's unpark can't be missed
+            if (enqueuePosition.get() == dequeuePosition) {
+                LockSupport.parkNanos(this, 1_000_000);
+            }
+            idle = false;
+        }
+    }
+
+    private void deliver(List<LogEvent> batch, AtomicLong deliveredCount) {
+        try {
+            batchConsumer.accept(batch);
+        } catch (Throwable t) {
+            // e.g. an AssertionError; recorded for flush() rather than killing the dispatcher thread
+            consumerFailure.compareAndSet(null, t);
+        } finally {
+            deliveredCount.addAndGet(batch.size());
+        }
+    }
+
+    private void rethrowConsumerFailure() {
+        Throwable failure = consumerFailure.getAndSet(null);
+        if (failure instanceof Error) {
+            throw (Error) failure;  // so a failed assertion in the consumer fails the test as itself
+        }
+        if (failure != null) {
+            throw new IllegalStateException("onEvent batch consumer failed", failure);
+        }
+    }
+
+    /**
+     * fails a wait for the dispatcher thread (a flush or {@code BLOCK} backpressure) that could never end
+     */
+    private void checkDispatching() {
+        if (!dispatcherThread.isAlive()) {
+            throw new IllegalStateException("AsyncEventDispatcher's dispatcher thread has stopped");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ronreynolds.test.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * controls whether a {@code TestLogger} records where each log call came from (as {@link LogEvent#getSource()}); the default
+ * ({@link #off()}) doesn't since finding the caller means walking the stack.
+ * <p>
+ * the caller is the first frame that isn't in {@code TestLogger} or slf4j itself ({@code AbstractLogger}, the fluent
+ * {@code LoggingEventBuilder}, etc) and is found with a {@code StackWalker} which only materializes the frames it visits
+ * (unlike {@code new Throwable().getStackTrace()} which fills in the whole stack). {@link #sampled(int)} bounds the cost for
+ * tests that log heavily but only need a few locations.
+ */
+public final class CallerCapture {
+    private static final CallerCapture OFF = new CallerCapture(0);
+    private static final CallerCapture ALWAYS = new CallerCapture(1);
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+
+    // capture 1 in sampleRate events (0 means never)
+    private final int sampleRate;
+
+    private CallerCapture(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * never record the caller (the default); {@code getSource()} is the top frame of the event's {@code Throwable} (if any)
+     */
+    public static CallerCapture off() {
+        return OFF;
+    }
+
+    /**
+     * record the caller of every event
+     */
+    public static CallerCapture always() {
+        return ALWAYS;
+    }
+
+    /**
+     * record the caller of (on average) 1 in {@code sampleRate} events
+     */
+    public static CallerCapture sampled(int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("sampleRate must be positive: " + sampleRate);
+        }
+        return sampleRate == 1 ? ALWAYS : new CallerCapture(sampleRate);
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    /**
+     * 1 in this many events record their caller; 0 if off
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * returns the caller of the current log call if this event is to record it; otherwise {@code null}
+     */
+    StackTraceElement captureCaller() {
+        if (sampleRate == 0 || sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return null;
+        }
+        return stackWalker.walk(frames -> frames.dropWhile(frame -> isLoggingFrame(frame.getClassName()))
+                                                .findFirst()
+                                                .map(StackWalker.StackFrame::toStackTraceElement)
+                                                .orElse(null));
+    }
+
+    private static boolean isLoggingFrame(String className) {
+        return className.startsWith("org.slf4j.") || className.equals(CallerCapture.class.getName())
+               || className.equals(TestLogger.class.getName());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof CallerCapture && sampleRate == ((CallerCapture) o).sampleRate;
+    }
+
+    @Override
+    public int hashCode() {
+        return sampleRate;
+    }
+
+    @Override
+    public String toString() {
+        return sampleRate == 0 ? "off" : sampleRate == 1 ? "always" : "sampled(" + sampleRate + ")";
+    }
+}
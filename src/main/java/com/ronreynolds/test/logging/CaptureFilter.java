@@ -0,0 +1,105 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+
+/**
+ * decides which of the log calls enabled by a {@code TestLogger}'s level it captures, based on the raw call (level, marker,
+ * message template, and args); e.g. a test that only asserts on one tenant's events can filter out the rest.
+ * <p>
+ * a filter is evaluated before the {@code LogEvent} is created (so before the MDC, thread, caller, or args are copied) and
+ * before the {@code CapturePolicy}; a filtered-out call allocates nothing (except the varargs array slf4j itself creates for
+ * 3+ arg calls). filtered-out calls are neither stored nor passed to on-event callbacks.
+ * <p>
+ * filters are called on the logging thread and must be thread-safe; they shouldn't log. {@code args} never includes the
+ * call's {@code Throwable} (a trailing {@code Throwable} arg, even a lone one as in {@code log.info("failed {}", e)}, is the
+ * event's {@code Throwable} as in {@code LogEvent}) and is only valid during the call (for 1- and 2-arg calls it's a
+ * per-thread array that's reused) so a filter mustn't keep it.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ TestLogger.setDefaultCaptureFilter(CaptureFilter.mdc("tenant", "acme").or(CaptureFilter.atOrAbove(Level.WARN)));
+ TestLogger.getLogger(Dao.class).setCaptureFilter(CaptureFilter.templates("query {} took {}ms"));
+ </pre>
+ @formatter:on
+ */
+@FunctionalInterface
+public interface CaptureFilter {
+    /**
+     * whether the call is captured
+     *
+     * @param marker   the call's marker; {@code null} if none
+     * @param template the call's message (template)
+     * @param args     the call's args (without its {@code Throwable}); never {@code null}
+     */
+    boolean accept(Level level, Marker marker, String template, Object[] args);
+
+    /**
+     * captures every call (to override a default filter)
+     */
+    static CaptureFilter all() {
+        return (level, marker, template, args) -> true;
+    }
+
+    /**
+     * captures calls at {@code level} or above (more severe)
+     */
+    static CaptureFilter atOrAbove(Level level) {
+        int threshold = Objects.requireNonNull(level, "null level not allowed").toInt();
+        return (callLevel, marker, template, args) -> callLevel.toInt() >= threshold;
+    }
+
+    /**
+     * captures calls whose marker is, or references, {@code marker}
+     */
+    static CaptureFilter marker(Marker marker) {
+        Objects.requireNonNull(marker, "marker must not be null");
+        return (level, callMarker, template, args) -> callMarker != null && callMarker.contains(marker);
+    }
+
+    /**
+     * captures calls made while the logging thread's MDC maps {@code key} to {@code value}
+     */
+    static CaptureFilter mdc(String key, String value) {
+        Objects.requireNonNull(key, "MDC key must not be null");
+        return (level, marker, template, args) -> Objects.equals(MDC.get(key), value);
+    }
+
+    /**
+     * captures calls of any of the specified message templates
+     */
+    static CaptureFilter templates(String... templates) {
+        Set<String> templateSet = Set.copyOf(Arrays.asList(templates));
+        return (level, marker, template, args) -> template != null && templateSet.contains(template);
+    }
+
+    /**
+     * captures calls accepted by this filter and {@code other}; {@code other} is only evaluated if this filter accepts
+     */
+    default CaptureFilter and(CaptureFilter other) {
+        Objects.requireNonNull(other, "filter must not be null");
+        return (level, marker, template, args) -> accept(level, marker, template, args)
+                                                  && other.accept(level, marker, template, args);
+    }
+
+    /**
+     * captures calls accepted by this filter or {@code other}; {@code other} is only evaluated if this filter rejects
+     */
+    default CaptureFilter or(CaptureFilter other) {
+        Objects.requireNonNull(other, "filter must not be null");
+        return (level, marker, template, args) -> accept(level, marker, template, args)
+                                                  || other.accept(level, marker, template, args);
+    }
+
+    /**
+     * captures calls this filter rejects
+     */
+    default CaptureFilter negate() {
+        return (level, marker, template, args) -> !accept(level, marker, template, args);
+    }
+}
@@ -0,0 +1,149 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.event.Level;
+
+/**
+ * a logger's state for its {@code CapturePolicy}: decides (before a {@code LogEvent} is created) whether a log call is captured
+ * and counts the calls it skips. deciding never allocates (except the first time {@code FirstPerTemplate} sees a template).
+ */
+abstract class CaptureGate {
+    private static final Level[] LEVELS = Level.values();
+
+    /**
+     * the gate of {@code CapturePolicy.all()}; stateless so it's shared
+     */
+    static final CaptureGate ALL = new CaptureGate(Level.ERROR) {
+        @Override
+        boolean admit(int ordinal, String template) {
+            return true;
+        }
+    };
+
+    // levels more severe than this are always captured (compared by Level.toInt())
+    private final int maxLevel;
+    // skipped calls by Level.ordinal()
+    private final LongAdder[] skipped = new LongAdder[LEVELS.length];
+
+    CaptureGate(Level maxLevel) {
+        this.maxLevel = maxLevel.toInt();
+        for (int i = 0; i < skipped.length; ++i) {
+            skipped[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * whether the call logging {@code template} at {@code level} is captured; counts it if not
+     */
+    final boolean tryCapture(Level level, String template) {
+        if (level.toInt() > maxLevel || admit(level.ordinal(), template)) {
+            return true;
+        }
+        skipped[level.ordinal()].increment();
+        return false;
+    }
+
+    long getSkippedCount(Level level) {
+        return skipped[level.ordinal()].sum();
+    }
+
+    long getSkippedCount() {
+        long count = 0;
+        for (LongAdder adder : skipped) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * whether the policy keeps the call (at the level with {@code ordinal}) logging {@code template}
+     */
+    abstract boolean admit(int ordinal, String template);
+
+    /**
+     * keeps each call with a probability of 1 in N (as {@code CallerCapture.sampled()} does) so threads sampling the same logger
+     * share no counter to contend on; a per-thread count would keep every short-lived (e.g. virtual) thread's first call
+     */
+    static final class Sampled extends CaptureGate {
+        private final int sampleRate;
+
+        Sampled(Level maxLevel, int sampleRate) {
+            super(maxLevel);
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        boolean admit(int ordinal, String template) {
+            return ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+        }
+    }
+
+    /**
+     * keeps the first N calls of each template; at most {@code TemplateCatalog.MAX_TEMPLATES} templates are counted (calls of
+     * templates beyond that are kept) so dynamically-built messages can't fill the heap
+     */
+    static final class FirstPerTemplate extends CaptureGate {
+        private final int maxEvents;
+        private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+        FirstPerTemplate(Level maxLevel, int maxEvents) {
+            super(maxLevel);
+            this.maxEvents = maxEvents;
+        }
+
+        @Override
+        boolean admit(int ordinal, String template) {
+            if (template == null) {
+                return true;
+            }
+            AtomicInteger count = counts.get(template);
+            if (count == null) {
+                if (counts.size() >= TemplateCatalog.MAX_TEMPLATES) {
+                    return true;
+                }
+                count = counts.computeIfAbsent(template, key -> new AtomicInteger());
+            }
+            // read first so a template past its limit is skipped without writing the shared count
+            return count.get() < maxEvents && count.getAndIncrement() < maxEvents;
+        }
+    }
+
+    /**
+     * a token bucket per level holding a second's worth of tokens, implemented as the GCRA: each level's "theoretical arrival
+     * time" advances by one interval per captured call and a call is skipped if that would put it more than a second ahead
+     */
+    static final class RateLimited extends CaptureGate {
+        private static final long SECOND_NANOS = 1_000_000_000L;
+        private final long intervalNanos;
+        private final AtomicLongArray arrivalTimes = new AtomicLongArray(LEVELS.length);
+
+        RateLimited(Level maxLevel, int eventsPerSecond) {
+            super(maxLevel);
+            this.intervalNanos = Math.max(1, SECOND_NANOS / eventsPerSecond);
+            long now = System.nanoTime();
+            for (int i = 0; i < LEVELS.length; ++i) {
+                arrivalTimes.set(i, now);    // a full bucket
+            }
+        }
+
+        @Override
+        boolean admit(int ordinal, String template) {
+            long now = System.nanoTime();
+            while (true) {
+                long arrivalTime = arrivalTimes.get(ordinal);
+                long next = (arrivalTime - now > 0 ? arrivalTime : now) + intervalNanos;
+                if (next - now > SECOND_NANOS) {
+                    return false;   // the bucket is empty
+                }
+                if (arrivalTimes.compareAndSet(ordinal, arrivalTime, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
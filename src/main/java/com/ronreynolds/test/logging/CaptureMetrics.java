@@ -0,0 +1,216 @@
+package com.ronreynolds.test.logging;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.event.Level;
+
+/**
+ * counters describing what the capture layer of every cached {@code TestLogger} is doing: events captured (by logger and
+ * level), log calls skipped by capture policies, events dropped by retention policies, events retained (and an estimate of
+ * their heap), time spent in on-event callbacks, and how often threads waited on each other (backoffs in the lock-free stores
+ * and waits for their locks).
+ * <p>
+ * counters are {@code LongAdder}s (striped per thread under contention) so counting adds no new contention point; reading
+ * sums them (and walks the cached loggers) so it's meant for monitoring, not the hot path. the counters are cumulative until
+ * {@link #reset()} (resetting a {@code TestLogger} doesn't zero them).
+ * <p>
+ * registered as the platform MBean {@value #OBJECT_NAME} by {@link #registerMBean()} or, on first use of {@code TestLogger},
+ * if the {@code TestLogger.jmx} system property is {@code true}; it's opt-in because starting the platform MBean server takes
+ * hundreds of milliseconds.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ runLoadTest();
+ CaptureMetrics metrics = CaptureMetrics.get();
+ System.out.println(metrics);
+ assertThat(metrics.getBackoffCount()).isLessThan(metrics.getCapturedEventCount() / 100);
+ </pre>
+ @formatter:on
+ */
+public final class CaptureMetrics implements CaptureMetricsMXBean {
+    public static final String OBJECT_NAME = "com.ronreynolds.test.logging:type=CaptureMetrics";
+    private static final CaptureMetrics INSTANCE = new CaptureMetrics();
+    private static final Level[] LEVELS = Level.values();
+
+    private final LongAdder onEventCount = new LongAdder();
+    private final LongAdder onEventNanos = new LongAdder();
+
+    private CaptureMetrics() {
+    }
+
+    public static CaptureMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * registers the metrics with the platform MBean server (if they aren't already)
+     * @return {@code false} if they couldn't be registered (e.g. a copy of this class in another class-loader got there first)
+     */
+    public static boolean registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+            return true;
+        } catch (JMException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * the number of events captured by every cached {@code TestLogger}
+     */
+    @Override
+    public long getCapturedEventCount() {
+        long count = 0;
+        for (TestLogger logger : TestLogger.cachedLoggers()) {
+            count += logger.getCapturedEventCount();
+        }
+        return count;
+    }
+
+    /**
+     * the number of events captured at each level (by level name)
+     */
+    @Override
+    public Map<String, Long> getCapturedEventCountsByLevel() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Level level : LEVELS) {
+            long count = 0;
+            for (TestLogger logger : TestLogger.cachedLoggers()) {
+                count += logger.getCapturedEventCount(level);
+            }
+            counts.put(level.name(), count);
+        }
+        return counts;
+    }
+
+    /**
+     * the number of events captured by each cached {@code TestLogger} that has captured any (by logger name)
+     */
+    @Override
+    public Map<String, Long> getCapturedEventCountsByLogger() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (TestLogger logger : TestLogger.cachedLoggers()) {
+            long count = logger.getCapturedEventCount();
+            if (count > 0) {
+                counts.put(logger.getName(), count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * the number of events evicted by retention policies
+     */
+    @Override
+    public long getDroppedEventCount() {
+        long count = 0;
+        for (TestLogger logger : TestLogger.cachedLoggers()) {
+            count += logger.ownEventStore().getDroppedCount();
+        }
+        return count;
+    }
+
+    /**
+     * the number of log calls skipped by capture policies (since each logger's policy was set or the logger was reset)
+     */
+    @Override
+    public long getSkippedEventCount() {
+        long count = 0;
+        for (TestLogger logger : TestLogger.cachedLoggers()) {
+            count += logger.getSkippedEventCount();
+        }
+        return count;
+    }
+
+    /**
+     * the number of events currently held by the loggers' own stores (an upper bound while events are being cleared)
+     */
+    @Override
+    public long getRetainedEventCount() {
+        long count = 0;
+        for (TestLogger logger : TestLogger.cachedLoggers()) {
+            count += logger.ownEventStore().getEventCount();
+        }
+        return count;
+    }
+
+    /**
+     * an estimate of the heap held by the retained events (not counting args' own size or spilled events)
+     */
+    @Override
+    public long getRetainedBytesEstimate() {
+        long bytes = 0;
+        for (TestLogger logger : TestLogger.cachedLoggers()) {
+            bytes += logger.ownEventStore().getRetainedBytesEstimate();
+        }
+        return bytes;
+    }
+
+    /**
+     * the number of times an on-event callback was called (by any {@code TestLogger})
+     */
+    @Override
+    public long getOnEventCount() {
+        return onEventCount.sum();
+    }
+
+    /**
+     * the total time spent in on-event callbacks
+     */
+    @Override
+    public long getOnEventNanos() {
+        return onEventNanos.sum();
+    }
+
+    /**
+     * the number of times a thread backed off waiting on another in a lock-free store or queue (e.g. an append retried while a
+     * buffer was being compacted or a read waiting for a reserved slot to be published)
+     */
+    @Override
+    public long getBackoffCount() {
+        return SpinWait.getBackoffCount();
+    }
+
+    /**
+     * the number of times a thread had to wait for a store's lock (clearing, compaction, spilling, index updates)
+     */
+    @Override
+    public long getLockWaitCount() {
+        return SpinWait.getLockWaitCount();
+    }
+
+    /**
+     * zeroes every counter (including each cached {@code TestLogger}'s captured counts)
+     */
+    @Override
+    public void reset() {
+        TestLogger.cachedLoggers().forEach(TestLogger::resetCapturedEventCounts);
+        onEventCount.reset();
+        onEventNanos.reset();
+        SpinWait.resetCounts();
+    }
+
+    void recordOnEvent(long nanos) {
+        onEventCount.increment();
+        onEventNanos.add(nanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CaptureMetrics[captured=%d %s, skipped=%d, dropped=%d, retained=%d (~%d bytes),"
+                             + " onEvent=%d (%d ns), backoffs=%d, lockWaits=%d]", getCapturedEventCount(),
+                             getCapturedEventCountsByLevel(), getSkippedEventCount(), getDroppedEventCount(),
+                             getRetainedEventCount(), getRetainedBytesEstimate(), getOnEventCount(), getOnEventNanos(),
+                             getBackoffCount(), getLockWaitCount());
+    }
+}
@@ -0,0 +1,32 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Map;
+
+/**
+ * the JMX view of {@link CaptureMetrics} (registered as {@value CaptureMetrics#OBJECT_NAME})
+ */
+public interface CaptureMetricsMXBean {
+    long getCapturedEventCount();
+
+    Map<String, Long> getCapturedEventCountsByLevel();
+
+    Map<String, Long> getCapturedEventCountsByLogger();
+
+    long getDroppedEventCount();
+
+    long getSkippedEventCount();
+
+    long getRetainedEventCount();
+
+    long getRetainedBytesEstimate();
+
+    long getOnEventCount();
+
+    long getOnEventNanos();
+
+    long getBackoffCount();
+
+    long getLockWaitCount();
+
+    void reset();
+}
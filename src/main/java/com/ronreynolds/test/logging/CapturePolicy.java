@@ -0,0 +1,147 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Objects;
+import org.slf4j.event.Level;
+
+/**
+ * controls which of the log calls enabled by a {@code TestLogger}'s level it captures; the default ({@link #all()}) captures
+ * every one. the others are for load tests that log far more than a test needs to look at: {@link #sampled(int)} keeps ~1 in N,
+ * {@link #firstPerTemplate(int)} keeps the first K of each message template, and {@link #rateLimited(int)} keeps at most N
+ * per second of each level. {@link #atOrBelow(Level)} limits a policy to the noisy levels (e.g. DEBUG and TRACE) so the rest
+ * are always captured.
+ * <p>
+ * a policy is applied before the {@code LogEvent} is created (so before the MDC, caller, or args are copied) and a skipped call
+ * allocates nothing; skipped calls are counted (see {@link TestLogger#getSkippedEventCount(Level)}) and never reach on-event
+ * callbacks. each logger keeps its own state for its policy (counts, rate-limit buckets) which starts over when the policy is
+ * changed or the logger is reset.
+ */
+public final class CapturePolicy {
+    private static final CapturePolicy ALL = new CapturePolicy(Kind.ALL, 0, Level.ERROR);
+
+    private enum Kind {
+        ALL, SAMPLED, FIRST_PER_TEMPLATE, RATE_LIMITED
+    }
+
+    private final Kind kind;
+    // the N of sampled(N), firstPerTemplate(N), or rateLimited(N)
+    private final int limit;
+    // the policy only applies to events at this level or below (more verbose)
+    private final Level maxLevel;
+
+    private CapturePolicy(Kind kind, int limit, Level maxLevel) {
+        this.kind = kind;
+        this.limit = limit;
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * capture every event (the default)
+     */
+    public static CapturePolicy all() {
+        return ALL;
+    }
+
+    /**
+     * capture (on average) 1 in {@code sampleRate} events: each is captured with a probability of {@code 1 / sampleRate}
+     */
+    public static CapturePolicy sampled(int sampleRate) {
+        return sampleRate == 1 ? ALL : new CapturePolicy(Kind.SAMPLED, requirePositive(sampleRate, "sampleRate"), Level.ERROR);
+    }
+
+    /**
+     * capture the first {@code maxEvents} events of each message template (events without a template are always captured)
+     */
+    public static CapturePolicy firstPerTemplate(int maxEvents) {
+        return new CapturePolicy(Kind.FIRST_PER_TEMPLATE, requirePositive(maxEvents, "maxEvents"), Level.ERROR);
+    }
+
+    /**
+     * capture at most {@code eventsPerSecond} events per second of each level (a token bucket that holds a second's worth so
+     * a burst of up to {@code eventsPerSecond} events is captured)
+     */
+    public static CapturePolicy rateLimited(int eventsPerSecond) {
+        return new CapturePolicy(Kind.RATE_LIMITED, requirePositive(eventsPerSecond, "eventsPerSecond"), Level.ERROR);
+    }
+
+    /**
+     * returns a copy of this policy that only applies to events at {@code level} or below (more verbose); events above it are
+     * always captured. e.g. {@code sampled(100).atOrBelow(Level.DEBUG)} keeps every INFO, WARN, and ERROR event
+     */
+    public CapturePolicy atOrBelow(Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        return kind == Kind.ALL || level == maxLevel ? this : new CapturePolicy(kind, limit, level);
+    }
+
+    /**
+     * whether every event is captured
+     */
+    public boolean isAll() {
+        return kind == Kind.ALL;
+    }
+
+    /**
+     * the most severe level this policy applies to (events above it are always captured)
+     */
+    public Level getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * creates the (per-logger) state that implements this policy
+     */
+    CaptureGate newGate() {
+        switch (kind) {
+            case SAMPLED:
+                return new CaptureGate.Sampled(maxLevel, limit);
+            case FIRST_PER_TEMPLATE:
+                return new CaptureGate.FirstPerTemplate(maxLevel, limit);
+            case RATE_LIMITED:
+                return new CaptureGate.RateLimited(maxLevel, limit);
+            default:
+                return CaptureGate.ALL;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CapturePolicy)) {
+            return false;
+        }
+        CapturePolicy that = (CapturePolicy) o;
+        return kind == that.kind && limit == that.limit && maxLevel == that.maxLevel;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, limit, maxLevel);
+    }
+
+    @Override
+    public String toString() {
+        String policy;
+        switch (kind) {
+            case SAMPLED:
+                policy = "sampled(" + limit + ")";
+                break;
+            case FIRST_PER_TEMPLATE:
+                policy = "firstPerTemplate(" + limit + ")";
+                break;
+            case RATE_LIMITED:
+                policy = "rateLimited(" + limit + ")";
+                break;
+            default:
+                return "all";
+        }
+        return maxLevel == Level.ERROR ? policy : policy + ".atOrBelow(" + maxLevel + ")";
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+}
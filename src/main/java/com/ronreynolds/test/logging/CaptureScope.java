@@ -0,0 +1,214 @@
+package com.ronreynolds.test.logging;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * an isolated set of captured events; while a scope is current on a thread every {@code TestLogger} captures that thread's
+ * events into the scope (instead of its own store) and reads, clears, and resets (including {@code TestLogger.resetAll()},
+ * {@code getAllEventsAtLevel()}, and {@code query()}) only see the scope's events. this is what lets tests that use the same
+ * loggers run in parallel; see {@link TestLoggerExtension}.
+ * <p>
+ * threads started while a scope is current inherit it; tasks handed to an already-running thread (e.g. a pool) need to be
+ * wrapped with one of the {@code wrap()} methods. that includes pools whose threads happen to be started (lazily) while some
+ * scope is current: such a thread inherits that scope, not the scope of whichever test later hands it work, so only wrapped
+ * tasks are captured reliably. once a scope is closed its events are discarded and every thread (including ones that
+ * inherited it) captures into the loggers' own stores again. levels and on-event callbacks are still shared by all scopes.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ try (CaptureScope scope = CaptureScope.open()) {
+    ExecutorService pool = scope.wrap(Executors.newFixedThreadPool(4));
+    codeUnderTest(pool);
+    assertThat(log, Level.INFO).hasSize(42);   // only the events logged by this test (on any thread)
+ }
+ </pre>
+ @formatter:on
+ */
+public final class CaptureScope implements AutoCloseable {
+    private static final InheritableThreadLocal<CaptureScope> currentScope = new InheritableThreadLocal<>();
+
+    // each TestLogger's events in this scope (created with the logger's retention policy when first used)
+    private final Map<TestLogger, EventStore> stores = new ConcurrentHashMap<>();
+    // the scope that was current on the opening thread (restored by close())
+    private final CaptureScope previous;
+    private volatile boolean closed;
+
+    private CaptureScope(CaptureScope previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * creates a scope and makes it current on this thread (and threads it starts) until it's closed
+     */
+    public static CaptureScope open() {
+        CaptureScope scope = new CaptureScope(current());
+        currentScope.set(scope);
+        return scope;
+    }
+
+    /**
+     * creates a scope that isn't nested in any other and makes it current on this thread (and threads it starts) until it's
+     * closed; unlike {@link #open()} it ignores the scope this thread inherited, e.g. a JUnit worker of a {@code ForkJoinPool}
+     * started while another test's scope was current. closing it leaves no scope current on this thread
+     */
+    public static CaptureScope openRoot() {
+        CaptureScope scope = new CaptureScope(null);
+        currentScope.set(scope);
+        return scope;
+    }
+
+    /**
+     * returns the scope current on this thread or {@code null} if there isn't one
+     */
+    public static CaptureScope current() {
+        CaptureScope scope = currentScope.get();
+        if (scope == null || !scope.closed) {
+            return scope;
+        }
+        // a scope closed by another thread (e.g. inherited by a pool thread); stop referencing it so it can be collected
+        CaptureScope open = scope.previous;
+        while (open != null && open.closed) {
+            open = open.previous;
+        }
+        currentScope.set(open);
+        return open;
+    }
+
+    /**
+     * returns a task that runs {@code task} with this scope current (on whatever thread runs it)
+     */
+    public Runnable wrap(Runnable task) {
+        Objects.requireNonNull(task, "task can not be null");
+        return () -> {
+            CaptureScope outer = currentScope.get();
+            currentScope.set(this);
+            try {
+                task.run();
+            } finally {
+                currentScope.set(outer);
+            }
+        };
+    }
+
+    /**
+     * returns a task that calls {@code task} with this scope current (on whatever thread calls it)
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        Objects.requireNonNull(task, "task can not be null");
+        return () -> {
+            CaptureScope outer = currentScope.get();
+            currentScope.set(this);
+            try {
+                return task.call();
+            } finally {
+                currentScope.set(outer);
+            }
+        };
+    }
+
+    /**
+     * returns an executor that runs each task with this scope current
+     */
+    public Executor wrap(Executor executor) {
+        Objects.requireNonNull(executor, "executor can not be null");
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * returns an executor-service that runs each task (however it's submitted) with this scope current; shutting it down shuts
+     * down {@code executorService}
+     */
+    public ExecutorService wrap(ExecutorService executorService) {
+        Objects.requireNonNull(executorService, "executorService can not be null");
+        return new AbstractExecutorService() {
+            @Override
+            public void execute(Runnable task) {
+                executorService.execute(wrap(task));
+            }
+
+            @Override
+            public void shutdown() {
+                executorService.shutdown();
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                return executorService.shutdownNow();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return executorService.isShutdown();
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return executorService.isTerminated();
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+                return executorService.awaitTermination(timeout, unit);
+            }
+        };
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * stops capturing into this scope, discards its events, and makes the scope that was current when it was opened current
+     * again on this thread
+     */
+    @Override
+    public void close() {
+        closed = true;
+        stores.clear();
+        if (currentScope.get() == this) {
+            currentScope.set(previous);
+        }
+    }
+
+    /**
+     * returns the store for {@code logger}'s events in this scope for reading or clearing them without creating it: an empty
+     * store if the logger hasn't captured an event in this scope; the logger's own store once the scope is closed
+     */
+    EventStore peekStore(TestLogger logger) {
+        EventStore store = stores.get(logger);
+        if (store != null) {
+            return store;
+        }
+        return closed ? logger.ownEventStore() : new EmptyEventStore(logger.getRetentionPolicy());
+    }
+
+    /**
+     * returns the store to capture {@code logger}'s events into in this scope, creating it on the logger's first event; the
+     * logger's own store once the scope is closed (e.g. for a thread that got the scope just before it was closed)
+     */
+    EventStore storeFor(TestLogger logger) {
+        EventStore store = stores.get(logger);
+        if (store == null) {
+            if (closed) {
+                return logger.ownEventStore();
+            }
+            // only the first event of each logger in the scope pays for computeIfAbsent
+            store = stores.computeIfAbsent(logger, ignore -> logger.getRetentionPolicy().newEventStore());
+            if (closed) {
+                // raced with close(); don't leave a store behind in the closed scope
+                stores.remove(logger);
+                return logger.ownEventStore();
+            }
+        }
+        return store;
+    }
+}
@@ -0,0 +1,104 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * a depth-limited copy of a {@code Throwable} (its class-name, message, top stack frames, cause, and suppressed) made when an
+ * event is captured with {@link ThrowableCapture#truncated(int)} so the event doesn't keep the original's full stack and
+ * object graph alive; returned by {@code LogEvent.getThrown()} in place of the original.
+ * <p>
+ * the copy's stack-trace and cause can't be changed; {@code printStackTrace()} and {@code toString()} render it as the
+ * original would have been rendered (by class-name, not {@code CapturedThrowable}).
+ */
+public final class CapturedThrowable extends Throwable {
+    private static final long serialVersionUID = 1L;
+
+    private final String originalClassName;
+    private final int omittedFrameCount;
+    private final boolean constructed;
+
+    private CapturedThrowable(Throwable original, int maxDepth, Set<Throwable> seen) {
+        super(original.getMessage(), copyOf(original.getCause(), maxDepth, seen), true, true);
+        this.originalClassName = original.getClass().getName();
+        StackTraceElement[] stack = original.getStackTrace();
+        int depth = Math.min(stack.length, maxDepth);
+        this.omittedFrameCount = stack.length - depth;
+        super.setStackTrace(Arrays.copyOf(stack, depth));
+        for (Throwable suppressed : original.getSuppressed()) {
+            CapturedThrowable copy = copyOf(suppressed, maxDepth, seen);
+            if (copy != null) {
+                addSuppressed(copy);
+            }
+        }
+        this.constructed = true;
+    }
+
+    /**
+     * recreates a copy read back from disk (see {@code EventCodec})
+     */
+    CapturedThrowable(String originalClassName, String message, StackTraceElement[] stackTrace, int omittedFrameCount,
+                      CapturedThrowable cause, List<CapturedThrowable> suppressed) {
+        super(message, cause, true, true);
+        this.originalClassName = originalClassName;
+        this.omittedFrameCount = omittedFrameCount;
+        super.setStackTrace(stackTrace);
+        suppressed.forEach(this::addSuppressed);
+        this.constructed = true;
+    }
+
+    /**
+     * returns a copy of {@code original} (and its causes and suppressed) keeping at most {@code maxDepth} stack frames of each;
+     * {@code null} if {@code original} is {@code null}
+     */
+    static CapturedThrowable of(Throwable original, int maxDepth) {
+        return copyOf(original, maxDepth, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    private static CapturedThrowable copyOf(Throwable original, int maxDepth, Set<Throwable> seen) {
+        if (original == null || original instanceof CapturedThrowable || !seen.add(original)) {
+            // already a copy (e.g. re-logged) or a cycle in the cause/suppressed graph
+            return original instanceof CapturedThrowable ? (CapturedThrowable) original : null;
+        }
+        return new CapturedThrowable(original, maxDepth, seen);
+    }
+
+    /**
+     * the class-name of the original {@code Throwable}
+     */
+    public String getOriginalClassName() {
+        return originalClassName;
+    }
+
+    /**
+     * the number of stack frames of the original (not including its causes) that weren't copied
+     */
+    public int getOmittedFrameCount() {
+        return omittedFrameCount;
+    }
+
+    /**
+     * the stack is copied from the original; not walked for this object
+     */
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
+
+    @Override
+    public void setStackTrace(StackTraceElement[] stackTrace) {
+        if (constructed) {
+            throw new UnsupportedOperationException("CapturedThrowable is immutable");
+        }
+        super.setStackTrace(stackTrace);
+    }
+
+    @Override
+    public String toString() {
+        String message = getLocalizedMessage();
+        return message != null ? originalClassName + ": " + message : originalClassName;
+    }
+}
@@ -0,0 +1,215 @@
+package com.ronreynolds.test.logging;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.event.Level;
+
+/**
+ * an {@code EventStore} that keeps every event in one insertion-ordered {@code LogEventBuffer} (so {@link #getAllEvents()}
+ * is a view rather than a merge-and-sort) plus a {@code LogEventBuffer} per level as a secondary index; used for the
+ * unbounded policy. the lists it returns are {@code EventSnapshot} views of the buffers rather than copies.
+ * <p>
+ * clearing a level raises that level's watermark (events created at or before it are cleared) and replaces the sealed buffers
+ * with copies of what's still visible; an {@code add()} racing with that retries on the replacement once it's installed. an
+ * event created before a clear is never appended to a buffer installed after it (it's cleared as though it had been appended
+ * before the clear) so the buffers only ever hold visible events and views of them needn't be filtered.
+ */
+final class ChronologicalEventStore implements EventStore {
+    private static final Level[] LEVELS = Level.values();
+
+    private final RetentionPolicy retentionPolicy;
+    // every event in the order it was added
+    private volatile LogEventBuffer log = new LogEventBuffer();
+    // the events of each level in the order they were added (indexed by Level.ordinal())
+    private final AtomicReferenceArray<LogEventBuffer> levelIndexes = new AtomicReferenceArray<>(LEVELS.length);
+    // events with nanoTimes at or below these were removed by clearEventsAtLevel() or reset() (indexed by Level.ordinal())
+    private final AtomicLongArray clearedThrough = EventOrder.newWatermarks(LEVELS.length);
+    // serializes clearing (appending never takes it)
+    private final ReentrantLock clearLock = new ReentrantLock();
+    // secondary indexes of log for EventQuery (built on demand)
+    private final EventIndex eventIndex = new EventIndex();
+
+    ChronologicalEventStore(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    @Override
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    @Override
+    public void add(LogEvent event) {
+        int attempt = 0;
+        while (true) {
+            LogEventBuffer current = log;
+            // checked after reading the buffer since a clear raises the watermark before installing the buffer's replacement
+            if (isCleared(event)) {
+                return;
+            }
+            if (current.tryAdd(event)) {
+                break;
+            }
+            attempt = SpinWait.backoff(attempt);    // the log is being compacted
+        }
+        int ordinal = event.getLevel().ordinal();
+        while (true) {
+            LogEventBuffer index = levelIndexes.get(ordinal);
+            if (index == null) {
+                // only the first event at each level pays for the CAS
+                levelIndexes.compareAndSet(ordinal, null, new LogEventBuffer());
+            } else if (isCleared(event) || index.tryAdd(event)) {
+                return;
+            } else {
+                attempt = SpinWait.backoff(attempt);
+            }
+        }
+    }
+
+    @Override
+    public List<LogEvent> getEventsAtLevel(Level level) {
+        LogEventBuffer index = levelIndexes.get(Objects.requireNonNull(level, "null level not allowed").ordinal());
+        return index != null ? visible(index) : List.of();
+    }
+
+    @Override
+    public List<LogEvent> getAllEvents() {
+        return visible(log);
+    }
+
+    @Override
+    public Map<Level, List<LogEvent>> getLogEventMap() {
+        Map<Level, List<LogEvent>> views = new EnumMap<>(Level.class);
+        for (Level level : LEVELS) {
+            LogEventBuffer index = levelIndexes.get(level.ordinal());
+            if (index != null) {
+                views.put(level, visible(index));
+            }
+        }
+        return Map.copyOf(views);
+    }
+
+    @Override
+    public void clearEventsAtLevel(Level level) {
+        int ordinal = Objects.requireNonNull(level, "null level not allowed").ordinal();
+        SpinWait.lock(clearLock);
+        try {
+            LogEventBuffer index = levelIndexes.get(ordinal);
+            if (index == null) {
+                return;
+            }
+            // sealing first means every event of this level in the sealed buffers was created at or before the watermark
+            index.seal();
+            LogEventBuffer oldLog = log;
+            oldLog.seal();
+            clearedThrough.accumulateAndGet(ordinal, EventOrder.watermark(), Math::max);
+            levelIndexes.set(ordinal, new LogEventBuffer());
+            log = compact(oldLog);
+        } finally {
+            clearLock.unlock();
+        }
+    }
+
+    @Override
+    public void reset() {
+        reset(EventOrder.watermark());
+    }
+
+    @Override
+    public void reset(long watermark) {
+        SpinWait.lock(clearLock);
+        try {
+            for (int ordinal = 0; ordinal < LEVELS.length; ++ordinal) {
+                LogEventBuffer index = levelIndexes.get(ordinal);
+                if (index != null) {
+                    index.seal();
+                }
+            }
+            log.seal();
+            for (int ordinal = 0; ordinal < LEVELS.length; ++ordinal) {
+                clearedThrough.accumulateAndGet(ordinal, watermark, Math::max);
+                levelIndexes.set(ordinal, null);
+            }
+            log = new LogEventBuffer();
+        } finally {
+            clearLock.unlock();
+        }
+    }
+
+    /**
+     * nothing is ever dropped from an unbounded store
+     */
+    @Override
+    public long getDroppedCount(Level level) {
+        return 0;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return 0;
+    }
+
+    @Override
+    public List<LogEvent> getIndexedEvents(EventAttribute attribute, Object value) {
+        if (attribute == EventAttribute.LEVEL) {
+            return getEventsAtLevel((Level) value);  // the level indexes are always kept up to date
+        }
+        LogEvent[] events = eventIndex.lookup(log, attribute, value);
+        return EventSnapshot.visible(events, events.length, watermarks());
+    }
+
+    @Override
+    public int getIndexedCount(EventAttribute attribute, Object value) {
+        if (attribute == EventAttribute.LEVEL) {
+            LogEventBuffer index = levelIndexes.get(((Level) value).ordinal());
+            return index != null ? index.size() : 0;
+        }
+        return eventIndex.count(log, attribute, value);
+    }
+
+    @Override
+    public int getEventCount() {
+        return log.size();
+    }
+
+    /**
+     * returns a view of the events in {@code buffer} in chronological order
+     */
+    private static List<LogEvent> visible(LogEventBuffer buffer) {
+        return buffer.isEmpty() ? List.of() : EventSnapshot.of(buffer);
+    }
+
+    /**
+     * whether {@code event} was created at or before the latest clear of its level
+     */
+    private boolean isCleared(LogEvent event) {
+        return event.getNanoTime() <= clearedThrough.get(event.getLevel().ordinal());
+    }
+
+    /**
+     * returns a new (unsealed) buffer holding the events in the sealed {@code buffer} that aren't hidden by a clear
+     */
+    private LogEventBuffer compact(LogEventBuffer buffer) {
+        long[] watermarks = watermarks();
+        LogEventBuffer compacted = new LogEventBuffer();
+        for (LogEvent event : buffer.toArray()) {
+            if (event.getNanoTime() > watermarks[event.getLevel().ordinal()]) {
+                compacted.tryAdd(event);
+            }
+        }
+        return compacted;
+    }
+
+    private long[] watermarks() {
+        long[] watermarks = new long[LEVELS.length];
+        for (int ordinal = 0; ordinal < LEVELS.length; ++ordinal) {
+            watermarks[ordinal] = clearedThrough.get(ordinal);
+        }
+        return watermarks;
+    }
+}
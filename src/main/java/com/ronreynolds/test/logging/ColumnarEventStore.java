@@ -0,0 +1,241 @@
+package com.ronreynolds.test.logging;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.event.Level;
+
+/**
+ * an {@code EventStore} that keeps every event as a row of an {@link EventColumns} table rather than as a {@code LogEvent};
+ * used for {@link RetentionPolicy#compact()}.
+ * <p>
+ * the lists returned are views of the rows visible when they were created; each {@code get()} materializes a new
+ * {@code LogEvent} (equal to every other materialization of that row) so only the events a test actually looks at are on the
+ * heap. clearing a level works as in {@code ChronologicalEventStore}: raise the level's watermark then compact the sealed
+ * table into a new one (copying column values, not events).
+ */
+final class ColumnarEventStore implements EventStore {
+    private static final Level[] LEVELS = Level.values();
+
+    private final RetentionPolicy retentionPolicy;
+    private volatile EventColumns columns = new EventColumns(new EventColumns.Dictionaries());
+    // events with nanoTimes at or below these were removed by clearEventsAtLevel() or reset() (indexed by Level.ordinal())
+    private final AtomicLongArray clearedThrough = EventOrder.newWatermarks(LEVELS.length);
+    // serializes clearing (appending never takes it)
+    private final ReentrantLock clearLock = new ReentrantLock();
+
+    ColumnarEventStore(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    @Override
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    @Override
+    public void add(LogEvent event) {
+        int attempt = 0;
+        while (!columns.tryAdd(event)) {
+            attempt = SpinWait.backoff(attempt);    // the table is being compacted
+        }
+    }
+
+    @Override
+    public List<LogEvent> getEventsAtLevel(Level level) {
+        return events(columns, watermarks(), Objects.requireNonNull(level, "null level not allowed"));
+    }
+
+    @Override
+    public List<LogEvent> getAllEvents() {
+        return events(columns, watermarks(), null);
+    }
+
+    @Override
+    public Map<Level, List<LogEvent>> getLogEventMap() {
+        EventColumns current = columns;
+        long[] watermarks = watermarks();
+        Map<Level, List<LogEvent>> copy = new EnumMap<>(Level.class);
+        for (Level level : LEVELS) {
+            List<LogEvent> events = events(current, watermarks, level);
+            if (!events.isEmpty()) {
+                copy.put(level, events);
+            }
+        }
+        return Map.copyOf(copy);
+    }
+
+    @Override
+    public void clearEventsAtLevel(Level level) {
+        int ordinal = Objects.requireNonNull(level, "null level not allowed").ordinal();
+        SpinWait.lock(clearLock);
+        try {
+            EventColumns oldColumns = columns;
+            int size = oldColumns.seal();
+            clearedThrough.accumulateAndGet(ordinal, EventOrder.watermark(), Math::max);
+            long[] watermarks = watermarks();
+            EventColumns compacted = new EventColumns(oldColumns.getDictionaries());
+            for (int row = 0; row < size; ++row) {
+                if (isVisible(oldColumns, row, watermarks)) {
+                    compacted.tryCopy(oldColumns, row);
+                }
+            }
+            columns = compacted;
+        } finally {
+            clearLock.unlock();
+        }
+    }
+
+    @Override
+    public void reset() {
+        reset(EventOrder.watermark());
+    }
+
+    @Override
+    public void reset(long watermark) {
+        SpinWait.lock(clearLock);
+        try {
+            columns.seal();
+            for (int ordinal = 0; ordinal < LEVELS.length; ++ordinal) {
+                clearedThrough.accumulateAndGet(ordinal, watermark, Math::max);
+            }
+            // new dictionaries so they don't grow across resets (e.g. with an MDC value per request); lists returned earlier
+            // keep the old ones
+            columns = new EventColumns(new EventColumns.Dictionaries());
+        } finally {
+            clearLock.unlock();
+        }
+    }
+
+    /**
+     * nothing is ever dropped from a compact store
+     */
+    @Override
+    public long getDroppedCount(Level level) {
+        return 0;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return 0;
+    }
+
+    @Override
+    public List<LogEvent> getIndexedEvents(EventAttribute attribute, Object value) {
+        // the level column is a byte per row so filtering it is as good as an index
+        return attribute == EventAttribute.LEVEL ? getEventsAtLevel((Level) value) : null;
+    }
+
+    @Override
+    public int getIndexedCount(EventAttribute attribute, Object value) {
+        if (attribute != EventAttribute.LEVEL) {
+            return -1;
+        }
+        return count(columns, watermarks(), (Level) value);
+    }
+
+    /**
+     * the number of rows not hidden by a clear (a scan of the level and nanoTime columns)
+     */
+    @Override
+    public int getEventCount() {
+        return count(columns, watermarks(), null);
+    }
+
+    @Override
+    public long getRetainedBytesEstimate() {
+        return (long) columns.size() * EventColumns.ROW_BYTES_ESTIMATE;
+    }
+
+    /**
+     * returns the visible rows of {@code columns} (at {@code level} if not {@code null}) in chronological order
+     */
+    private static List<LogEvent> events(EventColumns columns, long[] watermarks, Level level) {
+        int size = columns.size();
+        int[] rows = new int[size];
+        int rowCount = 0;
+        for (int row = 0; row < size; ++row) {
+            // isVisible() waits for the row to be published before its level is read
+            if (isVisible(columns, row, watermarks) && (level == null || columns.level(row) == level)) {
+                rows[rowCount++] = row;
+            }
+        }
+        return rowCount == 0 ? List.of() : new EventRowList(columns, Arrays.copyOf(rows, rowCount));
+    }
+
+    /**
+     * returns the number of visible rows of {@code columns} (at {@code level} if not {@code null})
+     */
+    private static int count(EventColumns columns, long[] watermarks, Level level) {
+        int count = 0;
+        for (int row = 0, size = columns.size(); row < size; ++row) {
+            if (isVisible(columns, row, watermarks) && (level == null || columns.level(row) == level)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isVisible(EventColumns columns, int row, long[] watermarks) {
+        columns.sequence(row);  // waits for the row to be published
+        return columns.nanoTime(row) > watermarks[columns.level(row).ordinal()];
+    }
+
+    private long[] watermarks() {
+        long[] watermarks = new long[LEVELS.length];
+        for (int ordinal = 0; ordinal < LEVELS.length; ++ordinal) {
+            watermarks[ordinal] = clearedThrough.get(ordinal);
+        }
+        return watermarks;
+    }
+
+    /**
+     * an immutable list of rows (materialized each time they're accessed) in chronological order
+     */
+    private static final class EventRowList extends AbstractList<LogEvent> implements RandomAccess {
+        private final EventColumns columns;
+        private final int[] rows;
+
+        EventRowList(EventColumns columns, int[] rows) {
+            this.columns = columns;
+            this.rows = rows;
+            restore();
+        }
+
+        @Override
+        public LogEvent get(int index) {
+            return columns.event(rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * sorts the rows chronologically (as {@code EventOrder.restore()} does) reading only the nanoTime and sequence columns
+         */
+        private void restore() {
+            for (int i = 1; i < rows.length; ++i) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= 0 && compare(rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    --j;
+                }
+                rows[j + 1] = row;
+            }
+        }
+
+        private int compare(int row1, int row2) {
+            return EventOrder.compare(columns.nanoTime(row1), columns.sequence(row1), columns.nanoTime(row2),
+                                      columns.sequence(row2));
+        }
+    }
+}
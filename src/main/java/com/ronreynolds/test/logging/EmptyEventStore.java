@@ -0,0 +1,69 @@
+package com.ronreynolds.test.logging;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.event.Level;
+
+/**
+ * a read-only {@code EventStore} with no events; what a {@code CaptureScope} reads (and clears) for a logger that hasn't
+ * captured anything in the scope, so reads don't create a store (let alone the segment files of a {@code spillToDisk} one)
+ */
+final class EmptyEventStore implements EventStore {
+    private final RetentionPolicy retentionPolicy;
+
+    EmptyEventStore(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    @Override
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    @Override
+    public void add(LogEvent event) {
+        throw new UnsupportedOperationException("EmptyEventStore is read-only");
+    }
+
+    @Override
+    public List<LogEvent> getEventsAtLevel(Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        return List.of();
+    }
+
+    @Override
+    public List<LogEvent> getAllEvents() {
+        return List.of();
+    }
+
+    @Override
+    public Map<Level, List<LogEvent>> getLogEventMap() {
+        return Map.of();
+    }
+
+    @Override
+    public void clearEventsAtLevel(Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public long getDroppedCount(Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        return 0;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return 0;
+    }
+
+    @Override
+    public int getEventCount() {
+        return 0;
+    }
+}
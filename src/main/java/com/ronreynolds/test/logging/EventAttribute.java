@@ -0,0 +1,88 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.Consumer;
+import org.slf4j.Marker;
+
+/**
+ * an attribute of a {@code LogEvent} that an {@code EventStore} can index and an {@code EventQuery} can look events up by
+ */
+abstract class EventAttribute {
+    static final EventAttribute LEVEL = new EventAttribute("level") {
+        @Override
+        void forEachKey(LogEvent event, Consumer<Object> action) {
+            action.accept(event.getLevel());
+        }
+    };
+
+    /**
+     * indexed by the name of the event's marker and the names of all the markers it references (so a lookup matches
+     * {@code Marker.contains(name)})
+     */
+    static final EventAttribute MARKER = new EventAttribute("marker") {
+        @Override
+        void forEachKey(LogEvent event, Consumer<Object> action) {
+            Marker marker = event.getMarker();
+            if (marker != null) {
+                forEachName(marker, action);
+            }
+        }
+
+        private void forEachName(Marker marker, Consumer<Object> action) {
+            action.accept(marker.getName());
+            for (Iterator<Marker> references = marker.iterator(); references.hasNext(); ) {
+                forEachName(references.next(), action);
+            }
+        }
+    };
+
+    static final EventAttribute THREAD = new EventAttribute("thread") {
+        @Override
+        void forEachKey(LogEvent event, Consumer<Object> action) {
+            action.accept(event.getThreadName());
+        }
+    };
+
+    private final String name;
+
+    private EventAttribute(String name) {
+        this.name = name;
+    }
+
+    /**
+     * the value of the MDC entry {@code key} when the event was logged
+     */
+    static EventAttribute mdc(String key) {
+        Objects.requireNonNull(key, "mdc key must not be null");
+        return new EventAttribute("mdc." + key) {
+            @Override
+            void forEachKey(LogEvent event, Consumer<Object> action) {
+                String value = event.getContextMap().get(key);
+                if (value != null) {
+                    action.accept(value);
+                }
+            }
+        };
+    }
+
+    /**
+     * passes each key the event should be found under to {@code action} (none if the event lacks the attribute)
+     */
+    abstract void forEachKey(LogEvent event, Consumer<Object> action);
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof EventAttribute && name.equals(((EventAttribute) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,219 @@
+package com.ronreynolds.test.logging;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.Level;
+
+/**
+ * the binary encoding of a {@code LogEvent} in a spill segment (see {@link SpillingEventStore}).
+ * <p>
+ * each record is its length (not including itself) followed by a fixed header (level ordinal, sequence number, and nanoTime;
+ * the store keeps a copy of each header on the heap so it can filter and order records without reading them), then the rest
+ * of the event: timestamp, logger, thread (name, id, virtual),
+ * message template, marker (and its references), args (as strings), MDC, source, and thrown (as a {@code CapturedThrowable}
+ * with its causes and suppressed). strings are length-prefixed UTF-8; a length of -1 is {@code null}.
+ */
+final class EventCodec {
+    private static final Level[] LEVELS = Level.values();
+    // offset of the header from the start of a record
+    private static final int LEVEL_OFFSET = Integer.BYTES;
+
+    // reused for every event encoded (encoding is done by one thread at a time)
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    /**
+     * returns {@code event}'s record (valid until the next call)
+     */
+    ByteBuffer encode(LogEvent event) {
+        scratch.clear();
+        scratch.putInt(0);  // length; filled in below
+        ensure(1 + 3 * Long.BYTES + Integer.BYTES);
+        scratch.put((byte) event.getLevel().ordinal());
+        scratch.putLong(event.getSequence());
+        scratch.putLong(event.getNanoTime());
+        Instant timestamp = event.getTimestamp();
+        scratch.putLong(timestamp.getEpochSecond());
+        scratch.putInt(timestamp.getNano());
+        putString(event.getLoggerName());
+        putString(event.getThreadName());
+        ensure(Long.BYTES + 1);
+        scratch.putLong(event.getThreadId());
+        scratch.put((byte) (event.isVirtualThread() ? 1 : 0));
+        putString(event.getMessage());
+        putMarker(event.getMarker());
+        Object[] args = event.getMessageArgs();
+        putInt(args != null ? args.length : -1);
+        if (args != null) {
+            for (Object arg : args) {
+                putString(arg != null ? MessageTemplate.formatArg(arg) : null);
+            }
+        }
+        putInt(event.getContextMap().size());
+        event.getContextMap().forEach((key, value) -> {
+            putString(key);
+            putString(value);
+        });
+        putFrame(event.getSource());
+        Throwable thrown = event.getThrown();
+        putThrowable(thrown != null ? CapturedThrowable.of(thrown, Integer.MAX_VALUE) : null);
+        scratch.putInt(0, scratch.position() - Integer.BYTES);
+        return scratch.flip();
+    }
+
+    /**
+     * the length of the record at {@code offset} of {@code segment} (including the length itself)
+     */
+    static int recordLength(ByteBuffer segment, int offset) {
+        return Integer.BYTES + segment.getInt(offset);
+    }
+
+    /**
+     * decodes the record at {@code offset} of {@code segment}; reads the mapped bytes in place (only strings are copied out)
+     */
+    static LogEvent decode(ByteBuffer segment, int offset) {
+        ByteBuffer in = segment.duplicate();
+        in.position(offset + LEVEL_OFFSET);
+        Level level = LEVELS[in.get()];
+        long sequence = in.getLong();
+        long nanoTime = in.getLong();
+        Instant timestamp = Instant.ofEpochSecond(in.getLong(), in.getInt());
+        String loggerName = getString(in);
+        EventThread thread = new EventThread(getString(in), in.getLong(), in.get() != 0);
+        String message = getString(in);
+        Marker marker = getMarker(in);
+        int argCount = in.getInt();
+        Object[] args = argCount >= 0 ? new Object[argCount] : null;
+        for (int i = 0; i < argCount; ++i) {
+            args[i] = getString(in);
+        }
+        int mdcSize = in.getInt();
+        Map<String, String> contextMap = mdcSize == 0 ? Map.of() : new HashMap<>(mdcSize * 2);
+        for (int i = 0; i < mdcSize; ++i) {
+            contextMap.put(getString(in), getString(in));
+        }
+        StackTraceElement source = getFrame(in);
+        Throwable thrown = getThrowable(in);
+        return new LogEvent(sequence, level, loggerName, marker, message, args, timestamp, nanoTime, source, thread, thrown,
+                            mdcSize == 0 ? contextMap : Map.copyOf(contextMap));
+    }
+
+    private void putMarker(Marker marker) {
+        putString(marker != null ? marker.getName() : null);
+        if (marker != null) {
+            List<Marker> references = new ArrayList<>();
+            for (Iterator<Marker> iterator = marker.iterator(); iterator.hasNext(); ) {
+                references.add(iterator.next());
+            }
+            putInt(references.size());
+            references.forEach(this::putMarker);   // slf4j markers can't reference each other cyclically
+        }
+    }
+
+    private static Marker getMarker(ByteBuffer in) {
+        String name = getString(in);
+        if (name == null) {
+            return null;
+        }
+        Marker marker = MarkerFactory.getDetachedMarker(name);
+        for (int references = in.getInt(); references > 0; --references) {
+            marker.add(getMarker(in));
+        }
+        return marker;
+    }
+
+    private void putFrame(StackTraceElement frame) {
+        putString(frame != null ? frame.getClassName() : null);
+        if (frame != null) {
+            putString(frame.getMethodName());
+            putString(frame.getFileName());
+            putInt(frame.getLineNumber());
+        }
+    }
+
+    private static StackTraceElement getFrame(ByteBuffer in) {
+        String className = getString(in);
+        return className != null ? new StackTraceElement(className, getString(in), getString(in), in.getInt()) : null;
+    }
+
+    private void putThrowable(CapturedThrowable thrown) {
+        putString(thrown != null ? thrown.getOriginalClassName() : null);
+        if (thrown != null) {
+            putString(thrown.getMessage());
+            StackTraceElement[] stack = thrown.getStackTrace();
+            putInt(stack.length);
+            for (StackTraceElement frame : stack) {
+                putFrame(frame);
+            }
+            putInt(thrown.getOmittedFrameCount());
+            putThrowable((CapturedThrowable) thrown.getCause());
+            Throwable[] suppressed = thrown.getSuppressed();
+            putInt(suppressed.length);
+            for (Throwable throwable : suppressed) {
+                putThrowable((CapturedThrowable) throwable);
+            }
+        }
+    }
+
+    private static CapturedThrowable getThrowable(ByteBuffer in) {
+        String className = getString(in);
+        if (className == null) {
+            return null;
+        }
+        String message = getString(in);
+        StackTraceElement[] stack = new StackTraceElement[in.getInt()];
+        for (int i = 0; i < stack.length; ++i) {
+            stack[i] = getFrame(in);
+        }
+        int omittedFrameCount = in.getInt();
+        CapturedThrowable cause = getThrowable(in);
+        int suppressedCount = in.getInt();
+        List<CapturedThrowable> suppressed = new ArrayList<>(suppressedCount);
+        for (int i = 0; i < suppressedCount; ++i) {
+            suppressed.add(getThrowable(in));
+        }
+        return new CapturedThrowable(className, message, stack, omittedFrameCount, cause, suppressed);
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(Integer.BYTES + bytes.length);
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void putInt(int value) {
+        ensure(Integer.BYTES);
+        scratch.putInt(value);
+    }
+
+    private void ensure(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            grown.put(scratch);
+            scratch = grown;
+        }
+    }
+}
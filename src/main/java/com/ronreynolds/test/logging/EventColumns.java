@@ -0,0 +1,298 @@
+package com.ronreynolds.test.logging;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+
+/**
+ * lock-free unbounded append-only table of events stored column-wise: sequence number, level, timestamps, and dictionary ids
+ * of the logger-name, thread, message template, and MDC in primitive arrays plus one reference each for the args and (rarely
+ * set) marker/thrown/source; a single arg is stored without its array. a row is ~54 bytes instead of a {@code LogEvent}, its
+ * {@code Instant}, and the slot(s) referencing them. backs {@link ColumnarEventStore}.
+ * <p>
+ * rows are appended like {@code LogEventBuffer}'s events (blocks whose sizes double, a {@code getAndIncrement} to reserve a
+ * row, sealing to replace the table) except a row is published by the volatile store of its sequence number after its other
+ * columns are written. {@link #event(int)} materializes a row as a {@code LogEvent} sharing the dictionaries' strings and MDC
+ * maps.
+ */
+final class EventColumns {
+    private static final Level[] LEVELS = Level.values();
+    private static final int FIRST_BLOCK_SHIFT = 8;
+    private static final int FIRST_BLOCK_SIZE = 1 << FIRST_BLOCK_SHIFT;
+    // set in reserved once sealed (so a table holds fewer than 2^30 rows)
+    private static final int SEALED = 1 << 30;
+    private static final int MAX_SIZE = SEALED - FIRST_BLOCK_SIZE;
+    // enough blocks to address MAX_SIZE rows
+    private static final int BLOCK_COUNT = Integer.SIZE - 2 - FIRST_BLOCK_SHIFT;
+    // stored in the args column for a single null arg (a null arg array is stored as null)
+    private static final Object NULL_ARG = new Object();
+    // retained bytes of a row with a single arg (the primitive columns plus the args and extras references)
+    static final int ROW_BYTES_ESTIMATE = 54;
+
+    private final AtomicReferenceArray<Block> blocks = new AtomicReferenceArray<>(BLOCK_COUNT);
+    // number of reserved rows (some of which may not be published yet) plus the SEALED bit
+    private final AtomicInteger reserved = new AtomicInteger();
+    // the size when sealed (failed appends keep incrementing reserved)
+    private volatile int sealedSize;
+    // shared with the tables compacted from this one so compaction copies ids rather than re-encoding
+    private final Dictionaries dictionaries;
+
+    EventColumns(Dictionaries dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    Dictionaries getDictionaries() {
+        return dictionaries;
+    }
+
+    /**
+     * appends {@code event} as a row; safe to call from any number of threads concurrently
+     * @return {@code false} if the table is sealed (and the event was not added)
+     */
+    boolean tryAdd(LogEvent event) {
+        int row = reserve();
+        if (row < 0) {
+            return false;
+        }
+        Block block = block(row);
+        int offset = offset(row);
+        block.levels[offset] = (byte) event.getLevel().ordinal();
+        Instant timestamp = event.getTimestamp();
+        block.epochSeconds[offset] = timestamp.getEpochSecond();
+        block.nanoAdjustments[offset] = timestamp.getNano();
+        block.nanoTimes[offset] = event.getNanoTime();
+        block.loggers[offset] = dictionaries.loggers.idOf(event.getLoggerName());
+        block.threads[offset] = dictionaries.threads.idOf(event.getThread());
+        block.templates[offset] = dictionaries.templates.idOf(event.getMessage());
+        block.contextMaps[offset] = dictionaries.contextMaps.idOf(event.getContextMap());
+        block.args[offset] = packArgs(event.getMessageArgs());
+        if (event.getMarker() != null || event.getThrown() != null || event.getSource() != null) {
+            block.extras[offset] = new Extras(event.getMarker(), event.getThrown(), event.getSource());
+        }
+        block.sequences.set(offset, event.getSequence());
+        return true;
+    }
+
+    /**
+     * appends a copy of row {@code row} of {@code from} (which must share this table's dictionaries)
+     * @return {@code false} if the table is sealed
+     */
+    boolean tryCopy(EventColumns from, int row) {
+        long sequence = from.sequence(row);   // waits for the row to be published
+        int copy = reserve();
+        if (copy < 0) {
+            return false;
+        }
+        Block source = from.block(row);
+        int sourceOffset = offset(row);
+        Block block = block(copy);
+        int offset = offset(copy);
+        block.levels[offset] = source.levels[sourceOffset];
+        block.epochSeconds[offset] = source.epochSeconds[sourceOffset];
+        block.nanoAdjustments[offset] = source.nanoAdjustments[sourceOffset];
+        block.nanoTimes[offset] = source.nanoTimes[sourceOffset];
+        block.loggers[offset] = source.loggers[sourceOffset];
+        block.threads[offset] = source.threads[sourceOffset];
+        block.templates[offset] = source.templates[sourceOffset];
+        block.contextMaps[offset] = source.contextMaps[sourceOffset];
+        block.args[offset] = source.args[sourceOffset];
+        block.extras[offset] = source.extras[sourceOffset];
+        block.sequences.set(offset, sequence);
+        return true;
+    }
+
+    /**
+     * fails all subsequent appends
+     * @return the final size
+     */
+    int seal() {
+        while (true) {
+            int current = reserved.get();
+            if ((current & SEALED) != 0) {
+                return sealedSize;
+            }
+            sealedSize = current; // written before the CAS so whoever sees SEALED sees the size
+            if (reserved.compareAndSet(current, current | SEALED)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * number of rows appended so far (including any still being published by their appending thread)
+     */
+    int size() {
+        int current = reserved.get();
+        return (current & SEALED) == 0 ? current : sealedSize;
+    }
+
+    /**
+     * the sequence number of the event in {@code row}; waits (briefly) if another thread has reserved the row but not yet
+     * published it
+     */
+    long sequence(int row) {
+        Block block = publishedBlock(row);
+        int offset = offset(row);
+        long sequence;
+        int attempt = 0;
+        while ((sequence = block.sequences.get(offset)) == 0) {
+            attempt = SpinWait.backoff(attempt);
+        }
+        return sequence;
+    }
+
+    /**
+     * the {@code nanoTime} of the event in {@code row} (which must have been published; see {@link #sequence(int)})
+     */
+    long nanoTime(int row) {
+        return publishedBlock(row).nanoTimes[offset(row)];
+    }
+
+    /**
+     * the level of the event in {@code row} (which must have been published; see {@link #sequence(int)})
+     */
+    Level level(int row) {
+        return LEVELS[publishedBlock(row).levels[offset(row)]];
+    }
+
+    /**
+     * materializes the event in {@code row} (which must have been published; see {@link #sequence(int)})
+     */
+    LogEvent event(int row) {
+        long sequence = sequence(row);
+        Block block = publishedBlock(row);
+        int offset = offset(row);
+        Extras extras = block.extras[offset];
+        return new LogEvent(sequence, LEVELS[block.levels[offset]], dictionaries.loggers.valueOf(block.loggers[offset]),
+                            extras != null ? extras.marker : null, dictionaries.templates.valueOf(block.templates[offset]),
+                            unpackArgs(block.args[offset]), Instant.ofEpochSecond(block.epochSeconds[offset], block.nanoAdjustments[offset]),
+                            block.nanoTimes[offset], extras != null ? extras.source : null,
+                            dictionaries.threads.valueOf(block.threads[offset]), extras != null ? extras.thrown : null,
+                            dictionaries.contextMaps.valueOf(block.contextMaps[offset]));
+    }
+
+    /**
+     * a single arg (by far the most common case) is stored without its array
+     */
+    private static Object packArgs(Object[] args) {
+        if (args == null || args.length != 1 || args[0] instanceof Object[]) {
+            return args;
+        }
+        return args[0] != null ? args[0] : NULL_ARG;
+    }
+
+    private static Object[] unpackArgs(Object packed) {
+        if (packed == null || packed instanceof Object[]) {
+            return (Object[]) packed;
+        }
+        return new Object[]{packed != NULL_ARG ? packed : null};
+    }
+
+    private int reserve() {
+        int row = reserved.getAndIncrement();
+        if ((row & SEALED) != 0) {
+            return -1;
+        }
+        if (row >= MAX_SIZE) {
+            reserved.decrementAndGet();
+            throw new IllegalStateException("EventColumns is full; call clearEventsAtLevel() or reset() on the TestLogger");
+        }
+        return row;
+    }
+
+    private Block block(int row) {
+        int blockIndex = blockIndex(row + FIRST_BLOCK_SIZE);
+        Block block = blocks.get(blockIndex);
+        if (block == null) {
+            // losing this race is harmless; the winner's block is used by everyone
+            blocks.compareAndSet(blockIndex, null, new Block(FIRST_BLOCK_SIZE << blockIndex));
+            block = blocks.get(blockIndex);
+        }
+        return block;
+    }
+
+    private Block publishedBlock(int row) {
+        if (row < 0 || row >= size()) {
+            throw new IndexOutOfBoundsException("row " + row + " out of bounds for size " + size());
+        }
+        int blockIndex = blockIndex(row + FIRST_BLOCK_SIZE);
+        Block block;
+        int attempt = 0;
+        while ((block = blocks.get(blockIndex)) == null) {
+            attempt = SpinWait.backoff(attempt);
+        }
+        return block;
+    }
+
+    private static int offset(int row) {
+        int pos = row + FIRST_BLOCK_SIZE;
+        return pos - Integer.highestOneBit(pos);
+    }
+
+    private static int blockIndex(int pos) {
+        return (Integer.SIZE - 1 - Integer.numberOfLeadingZeros(pos)) - FIRST_BLOCK_SHIFT;
+    }
+
+    /**
+     * the dictionaries a store's tables encode strings and MDC maps with; replaced (not cleared) when the store is reset since
+     * lists returned before the reset still read their rows' values from them
+     */
+    static final class Dictionaries {
+        private final ValueDictionary<String> loggers = new ValueDictionary<>();
+        private final ValueDictionary<EventThread> threads = new ValueDictionary<>();
+        private final ValueDictionary<String> templates = new ValueDictionary<>();
+        private final ValueDictionary<Map<String, String>> contextMaps = new ValueDictionary<>();
+    }
+
+    /**
+     * one block of rows; every column has the block's capacity
+     */
+    private static final class Block {
+        // 0 until the row is published
+        private final AtomicLongArray sequences;
+        private final byte[] levels;
+        private final long[] epochSeconds;
+        private final int[] nanoAdjustments;
+        private final long[] nanoTimes;
+        private final int[] loggers;
+        private final int[] threads;
+        private final int[] templates;
+        private final int[] contextMaps;
+        // see packArgs()
+        private final Object[] args;
+        private final Extras[] extras;
+
+        Block(int capacity) {
+            sequences = new AtomicLongArray(capacity);
+            levels = new byte[capacity];
+            epochSeconds = new long[capacity];
+            nanoAdjustments = new int[capacity];
+            nanoTimes = new long[capacity];
+            loggers = new int[capacity];
+            threads = new int[capacity];
+            templates = new int[capacity];
+            contextMaps = new int[capacity];
+            args = new Object[capacity];
+            extras = new Extras[capacity];
+        }
+    }
+
+    /**
+     * the columns most events don't have
+     */
+    private static final class Extras {
+        private final Marker marker;
+        private final Throwable thrown;
+        private final StackTraceElement source;
+
+        Extras(Marker marker, Throwable thrown, StackTraceElement source) {
+            this.marker = marker;
+            this.thrown = thrown;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.ronreynolds.test.logging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * secondary indexes over a {@code LogEventBuffer} for {@code EventQuery}; an index for an attribute is only built when a query
+ * first looks events up by it and is then brought up to date incrementally (from where it left off) by each later lookup so
+ * logging never pays for indexing.
+ * <p>
+ * positions are only meaningful for one buffer so all indexes are discarded when the store replaces its buffer (e.g. a clear).
+ */
+final class EventIndex {
+    private static final LogEvent[] NO_EVENTS = {};
+
+    // guards everything below (lookups are rare compared to appends which never take it)
+    private final ReentrantLock lock = new ReentrantLock();
+    private LogEventBuffer source;
+    private final Map<EventAttribute, AttributeIndex> indexes = new HashMap<>();
+
+    /**
+     * returns the events in {@code log} whose {@code attribute} has {@code value} in the order they were appended
+     */
+    LogEvent[] lookup(LogEventBuffer log, EventAttribute attribute, Object value) {
+        SpinWait.lock(lock);
+        try {
+            List<LogEvent> eventList = update(log, attribute).eventsByKey.get(value);
+            return eventList != null ? eventList.toArray(NO_EVENTS) : NO_EVENTS;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * returns the number of events in {@code log} whose {@code attribute} has {@code value}
+     */
+    int count(LogEventBuffer log, EventAttribute attribute, Object value) {
+        SpinWait.lock(lock);
+        try {
+            List<LogEvent> eventList = update(log, attribute).eventsByKey.get(value);
+            return eventList != null ? eventList.size() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AttributeIndex update(LogEventBuffer log, EventAttribute attribute) {
+        if (log != source) {
+            indexes.clear();
+            source = log;
+        }
+        AttributeIndex index = indexes.computeIfAbsent(attribute, ignore -> new AttributeIndex());
+        int size = log.size();
+        for (; index.indexedThrough < size; ++index.indexedThrough) {
+            LogEvent event = log.get(index.indexedThrough);
+            attribute.forEachKey(event, key -> index.add(key, event));
+        }
+        return index;
+    }
+
+    /**
+     * the events appended to the source buffer (up to {@code indexedThrough}) grouped by their value of one attribute
+     */
+    private static final class AttributeIndex {
+        private final Map<Object, List<LogEvent>> eventsByKey = new HashMap<>();
+        private int indexedThrough;
+
+        void add(Object key, LogEvent event) {
+            List<LogEvent> eventList = eventsByKey.computeIfAbsent(key, ignore -> new ArrayList<>());
+            // an event is only added once per key even if it has the key more than once (e.g. a marker referenced twice)
+            if (eventList.isEmpty() || eventList.get(eventList.size() - 1) != event) {
+                eventList.add(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.ronreynolds.test.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+
+/**
+ * a {@code Predicate<LogEvent>} built from the same checks {@code LogEventAssert} makes (every check added must hold); used for
+ * the steps of an {@code EventSequence} where each event is tested against each step so a check must be cheap and mustn't
+ * throw. its {@code toString()} describes the checks so sequence failures name what was expected.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ EventMatcher.event().isLevel(Level.INFO).hasMessageTemplate("request {} received").contextMapContains("tenant", "42")
+ </pre>
+ @formatter:on
+ */
+public final class EventMatcher implements Predicate<LogEvent> {
+    private final List<String> descriptions = new ArrayList<>();
+    private final List<Predicate<? super LogEvent>> checks = new ArrayList<>();
+
+    private EventMatcher() {
+    }
+
+    /**
+     * matches every event until checks are added
+     */
+    public static EventMatcher event() {
+        return new EventMatcher();
+    }
+
+    public EventMatcher isLevel(Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        return add("level=" + level, event -> event.getLevel() == level);
+    }
+
+    public EventMatcher hasMessageTemplate(String template) {
+        return add("template=\"" + template + "\"", event -> Objects.equals(event.getMessage(), template));
+    }
+
+    public EventMatcher hasFormattedMessage(String message) {
+        return add("message=\"" + message + "\"", event -> Objects.equals(event.getFormattedMessage(), message));
+    }
+
+    public EventMatcher hasLoggerName(String loggerName) {
+        return add("logger=" + loggerName, event -> Objects.equals(event.getLoggerName(), loggerName));
+    }
+
+    /**
+     * events whose marker is (or references) the marker named {@code markerName}
+     */
+    public EventMatcher hasMarker(String markerName) {
+        Objects.requireNonNull(markerName, "marker name must not be null");
+        return add("marker=" + markerName, event -> {
+            Marker marker = event.getMarker();
+            return marker != null && marker.contains(markerName);
+        });
+    }
+
+    public EventMatcher contextMapContains(String key, String value) {
+        Objects.requireNonNull(key, "key can not be null");
+        return add("mdc." + key + "=" + value, event -> Objects.equals(event.getContextMap().get(key), value));
+    }
+
+    /**
+     * events whose {@code Throwable} is a {@code type} (or, if truncated, a {@code CapturedThrowable} copy of exactly that
+     * class)
+     */
+    public EventMatcher hasThrownOfType(Class<? extends Throwable> type) {
+        Objects.requireNonNull(type, "type can not be null");
+        return add("thrown=" + type.getSimpleName(), event -> {
+            Throwable thrown = event.getThrown();
+            if (thrown instanceof CapturedThrowable) {
+                return type.getName().equals(((CapturedThrowable) thrown).getOriginalClassName());
+            }
+            return type.isInstance(thrown);
+        });
+    }
+
+    /**
+     * events matching {@code predicate} (described as {@code description} in failure messages)
+     */
+    public EventMatcher matching(String description, Predicate<? super LogEvent> predicate) {
+        return add(Objects.requireNonNull(description, "description can not be null"),
+                   Objects.requireNonNull(predicate, "predicate can not be null"));
+    }
+
+    @Override
+    public boolean test(LogEvent event) {
+        for (Predicate<? super LogEvent> check : checks) {
+            if (!check.test(event)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "event" + descriptions;
+    }
+
+    private EventMatcher add(String description, Predicate<? super LogEvent> check) {
+        descriptions.add(description);
+        checks.add(check);
+        return this;
+    }
+}
@@ -0,0 +1,208 @@
+package com.ronreynolds.test.logging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * chronological ordering of {@code LogEvent}s: by {@link LogEvent#getNanoTime()} (monotonic across threads) and then, for
+ * events created in the same clock tick, by {@link LogEvent#getSequence()} (which increases within a thread). sequence numbers
+ * alone don't order events from different threads (see {@code Sequencer}); the only events ordered "wrongly" are ones from
+ * different threads in the same tick, which at the nanosecond resolution of most platforms' clocks are concurrent anyway.
+ * <p>
+ * a clear hides the events created before it with a {@link #watermark()} of the clock rather than of the sequence numbers. so
+ * in the stores that clear that way (all but the bounded policies' {@code LevelEventStore}, which swaps in an empty ring) an
+ * event created before a clear but added after it (its thread was preempted in between) is cleared too, as though it had
+ * been added first.
+ * <p>
+ * every store appends events in the order they arrive which, across threads, can differ slightly from the order they were
+ * created (a thread can be preempted between constructing an event and adding it); {@link #restore(LogEvent[], int)} repairs
+ * that in O(n + inversions) which for an append log is effectively O(n). sorted lists from several stores are combined with a
+ * k-way {@link #merge(List) merge} (or pairwise {@link #merge(List, List) merges}) instead of being concatenated and re-sorted.
+ */
+final class EventOrder {
+    static final Comparator<LogEvent> CHRONOLOGICAL = (e1, e2) -> compare(e1.getNanoTime(), e1.getSequence(),
+                                                                          e2.getNanoTime(), e2.getSequence());
+
+    private EventOrder() {
+    }
+
+    /**
+     * compares two events by their {@code nanoTime}s and sequence numbers (for stores that don't keep {@code LogEvent}s)
+     */
+    static int compare(long nanoTime1, long sequence1, long nanoTime2, long sequence2) {
+        int byTime = Long.compare(nanoTime1, nanoTime2);
+        return byTime != 0 ? byTime : Long.compare(sequence1, sequence2);
+    }
+
+    /**
+     * returns a {@code nanoTime} at or after that of every event created before the call and before that of every event
+     * created after it returns; events at or below a level's watermark are hidden by a clear.
+     * <p>
+     * it waits for the clock to tick, i.e. up to one {@code System.nanoTime()} tick: nanoseconds on most platforms but up to
+     * microseconds on some (e.g. Windows or some VMs), so it backs off (spin, yield, then park) rather than busy-spinning
+     * the whole time. clears and resets pay this wait (once per {@code TestLogger.resetAll()}, not once per logger);
+     * capturing never does.
+     */
+    static long watermark() {
+        long watermark = System.nanoTime();
+        int attempt = 0;
+        while (System.nanoTime() == watermark) {
+            attempt = SpinWait.pause(attempt);     // not contention, so not counted as a backoff
+        }
+        return watermark;
+    }
+
+    /**
+     * per-level watermarks (by {@code Level.ordinal()}) below every event's {@code nanoTime}
+     */
+    static AtomicLongArray newWatermarks(int levels) {
+        AtomicLongArray watermarks = new AtomicLongArray(levels);
+        for (int ordinal = 0; ordinal < levels; ++ordinal) {
+            watermarks.set(ordinal, Long.MIN_VALUE);
+        }
+        return watermarks;
+    }
+
+    /**
+     * sorts the first {@code size} events chronologically; an insertion sort since the input is almost always already in order
+     */
+    static void restore(LogEvent[] events, int size) {
+        for (int i = 1; i < size; ++i) {
+            LogEvent event = events[i];
+            int j = i - 1;
+            if (CHRONOLOGICAL.compare(events[j], event) <= 0) {
+                continue;
+            }
+            do {
+                events[j + 1] = events[j];
+            } while (--j >= 0 && CHRONOLOGICAL.compare(events[j], event) > 0);
+            events[j + 1] = event;
+        }
+    }
+
+    /**
+     * returns an immutable list of the first {@code size} events in chronological order (reusing {@code events} when possible)
+     */
+    static List<LogEvent> toList(LogEvent[] events, int size) {
+        restore(events, size);
+        if (size == events.length) {
+            return List.of(events);
+        }
+        LogEvent[] trimmed = new LogEvent[size];
+        System.arraycopy(events, 0, trimmed, 0, size);
+        return List.of(trimmed);
+    }
+
+    /**
+     * merges lists that are each in chronological order into one immutable list in chronological order
+     */
+    static List<LogEvent> merge(List<List<LogEvent>> sortedLists) {
+        List<List<LogEvent>> nonEmpty = new ArrayList<>(sortedLists.size());
+        int size = 0;
+        for (List<LogEvent> eventList : sortedLists) {
+            if (!eventList.isEmpty()) {
+                nonEmpty.add(eventList);
+                size += eventList.size();
+            }
+        }
+        if (nonEmpty.isEmpty()) {
+            return List.of();
+        }
+        if (nonEmpty.size() == 1) {
+            return Collections.unmodifiableList(nonEmpty.get(0));
+        }
+        LogEvent[] merged = new LogEvent[size];
+        Iterator<LogEvent> mergeIterator = merge(nonEmpty.stream().map(List::iterator).collect(Collectors.toList()));
+        for (int i = 0; i < size; ++i) {
+            merged[i] = mergeIterator.next();
+        }
+        return List.of(merged);
+    }
+
+    /**
+     * merges two lists that are each in chronological order into one (immutable) chronological list; the pairwise step of a
+     * parallel merge
+     */
+    static List<LogEvent> merge(List<LogEvent> left, List<LogEvent> right) {
+        if (left.isEmpty() || right.isEmpty()) {
+            return Collections.unmodifiableList(left.isEmpty() ? right : left);
+        }
+        LogEvent[] merged = new LogEvent[left.size() + right.size()];
+        int l = 0;
+        int r = 0;
+        for (int i = 0; i < merged.length; ++i) {
+            if (r == right.size() || (l < left.size() && CHRONOLOGICAL.compare(left.get(l), right.get(r)) <= 0)) {
+                merged[i] = left.get(l++);
+            } else {
+                merged[i] = right.get(r++);
+            }
+        }
+        return List.of(merged);
+    }
+
+    /**
+     * lazily merges iterators that are each in chronological order; each iterator is only advanced when its previous event is
+     * returned
+     */
+    static Iterator<LogEvent> merge(Collection<Iterator<LogEvent>> sortedIterators) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, sortedIterators.size()));
+        for (Iterator<LogEvent> iterator : sortedIterators) {
+            if (iterator.hasNext()) {
+                heads.add(new Cursor(iterator));
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public LogEvent next() {
+                Cursor cursor = heads.poll();
+                if (cursor == null) {
+                    throw new NoSuchElementException();
+                }
+                LogEvent event = cursor.head;
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+                return event;
+            }
+        };
+    }
+
+    /**
+     * the next unmerged event of one of the iterators being merged
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final Iterator<LogEvent> iterator;
+        private LogEvent head;
+
+        Cursor(Iterator<LogEvent> iterator) {
+            this.iterator = iterator;
+            this.head = iterator.next();
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            head = iterator.next();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor that) {
+            return CHRONOLOGICAL.compare(head, that.head);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.ronreynolds.test.logging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+
+/**
+ * a query over the events captured by {@code TestLogger}s; every condition added must hold for an event to match.
+ * <p>
+ * instead of copying and filtering every captured event, each logger's events are looked up by the most selective of the
+ * query's level, marker, thread, and MDC conditions using secondary indexes (built on first use and updated incrementally by
+ * later queries; see {@link #explain()}) and only those candidates are filtered by the rest. loggers are selected by name
+ * before any of their events are looked at.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ List&lt;LogEvent&gt; audits = TestLogger.query()
+    .fromLogger("com.acme")
+    .atLevel(Level.WARN)
+    .withMarker("AUDIT")
+    .withMdc("tenant", "42")
+    .list();
+ LogEventListAssert.assertThat(TestLogger.query().withMdc("tenant", "42")).hasSize(3);
+ </pre>
+ @formatter:on
+ */
+public final class EventQuery {
+    private final Supplier<? extends Collection<TestLogger>> loggers;
+    // logger names (each matching the logger and its descendants)
+    private final List<String> loggerNames = new ArrayList<>();
+    private final List<Condition> conditions = new ArrayList<>();
+
+    EventQuery(Supplier<? extends Collection<TestLogger>> loggers) {
+        this.loggers = loggers;
+    }
+
+    /**
+     * a query over the events of the specified {@code TestLogger}s (e.g. ones not created via {@code TestLogger.getLogger()});
+     * use {@link TestLogger#query()} to query every cached {@code TestLogger}
+     */
+    public static EventQuery of(TestLogger... loggers) {
+        List<TestLogger> loggerList = List.of(loggers);
+        return new EventQuery(() -> loggerList);
+    }
+
+    /**
+     * events at {@code level}
+     */
+    public EventQuery atLevel(Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        return add(new Condition(EventAttribute.LEVEL, level, event -> event.getLevel() == level));
+    }
+
+    /**
+     * events logged to the logger named {@code loggerName} or its descendants (e.g. {@code "com.acme"} matches
+     * {@code "com.acme.billing.Invoice"} but not {@code "com.acmeco"})
+     */
+    public EventQuery fromLogger(String loggerName) {
+        loggerNames.add(Objects.requireNonNull(loggerName, "logger name must not be null"));
+        return this;
+    }
+
+    /**
+     * events whose marker is (or references) the marker named {@code markerName}
+     */
+    public EventQuery withMarker(String markerName) {
+        Objects.requireNonNull(markerName, "marker name must not be null");
+        return add(new Condition(EventAttribute.MARKER, markerName, event -> {
+            Marker marker = event.getMarker();
+            return marker != null && marker.contains(markerName);
+        }));
+    }
+
+    /**
+     * events logged on the thread named {@code threadName}
+     */
+    public EventQuery onThread(String threadName) {
+        Objects.requireNonNull(threadName, "thread name must not be null");
+        return add(new Condition(EventAttribute.THREAD, threadName, event -> threadName.equals(event.getThreadName())));
+    }
+
+    /**
+     * events logged while the MDC entry {@code key} was {@code value}
+     */
+    public EventQuery withMdc(String key, String value) {
+        Objects.requireNonNull(value, "mdc value must not be null");
+        return add(new Condition(EventAttribute.mdc(key), value, event -> value.equals(event.getContextMap().get(key))));
+    }
+
+    /**
+     * events matching {@code predicate}; never used to look events up so it's only applied to the candidates found by the
+     * other conditions
+     */
+    public EventQuery matching(Predicate<? super LogEvent> predicate) {
+        Objects.requireNonNull(predicate, "predicate must not be null");
+        return add(new Condition(null, "predicate", predicate));
+    }
+
+    /**
+     * returns the matching events in the order they occurred; loggers are only searched once the stream's terminal operation
+     * starts and events are only filtered as they're consumed
+     */
+    public Stream<LogEvent> stream() {
+        Supplier<Spliterator<LogEvent>> spliterator = () -> {
+            List<Iterator<LogEvent>> eventIterators = new ArrayList<>();
+            for (TestLogger logger : matchingLoggers()) {
+                eventIterators.add(candidates(logger.getEventStore()).stream().filter(this::matches).iterator());
+            }
+            // each logger's events are already chronological
+            return Spliterators.spliteratorUnknownSize(EventOrder.merge(eventIterators),
+                                                       Spliterator.ORDERED | Spliterator.NONNULL);
+        };
+        return StreamSupport.stream(spliterator, Spliterator.ORDERED | Spliterator.NONNULL, false);
+    }
+
+    /**
+     * returns an immutable list of the matching events in the order they occurred
+     */
+    public List<LogEvent> list() {
+        return stream().collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * returns the number of matching events (without collecting or ordering them)
+     */
+    public long count() {
+        long count = 0;
+        for (TestLogger logger : matchingLoggers()) {
+            count += candidates(logger.getEventStore()).stream().filter(this::matches).count();
+        }
+        return count;
+    }
+
+    /**
+     * describes how the query would be run against each matching logger: which index (if any) its candidate events would be
+     * looked up with and how many candidates that is; building or updating the chosen indexes is the only work done
+     */
+    public String explain() {
+        StringBuilder plan = new StringBuilder(toString());
+        Collection<TestLogger> allLoggers = loggers.get();
+        List<TestLogger> matchingLoggers = matchingLoggers();
+        plan.append("\n").append(matchingLoggers.size()).append(" of ").append(allLoggers.size()).append(" loggers");
+        if (!loggerNames.isEmpty()) {
+            plan.append(" match logger=").append(String.join(",", loggerNames));
+        }
+        for (TestLogger logger : matchingLoggers) {
+            EventStore store = logger.getEventStore();
+            plan.append("\n  ").append(logger.getName()).append(": ");
+            Condition lookup = mostSelective(store);
+            if (lookup != null) {
+                plan.append("lookup ").append(lookup).append(" (")
+                    .append(store.getIndexedCount(lookup.attribute, lookup.value)).append(" of ");
+            } else {
+                plan.append("scan (");
+            }
+            plan.append(store.getEventCount()).append(" events)");
+            List<Condition> filters = new ArrayList<>(conditions);
+            filters.remove(lookup);
+            if (!filters.isEmpty()) {
+                plan.append(" then filter ").append(filters);
+            }
+        }
+        return plan.toString();
+    }
+
+    /**
+     * describes the query's conditions
+     */
+    @Override
+    public String toString() {
+        List<String> description = new ArrayList<>();
+        loggerNames.forEach(loggerName -> description.add("logger=" + loggerName));
+        conditions.forEach(condition -> description.add(condition.toString()));
+        return "EventQuery" + description;
+    }
+
+    private EventQuery add(Condition condition) {
+        conditions.add(condition);
+        return this;
+    }
+
+    private List<TestLogger> matchingLoggers() {
+        return loggers.get().stream()
+                      .filter(logger -> loggerNames.stream().allMatch(loggerName -> isSelfOrDescendant(logger.getName(), loggerName)))
+                      .collect(Collectors.toList());
+    }
+
+    private static boolean isSelfOrDescendant(String name, String ancestorName) {
+        if (!name.startsWith(ancestorName)) {
+            return false;
+        }
+        if (name.length() == ancestorName.length()) {
+            return true;
+        }
+        // same separators as the level hierarchy (see TestLogger.setLoggerLevel)
+        char separator = name.charAt(ancestorName.length());
+        return separator == '.' || separator == '$';
+    }
+
+    /**
+     * returns the events of {@code store} that could match (looked up with the most selective indexed condition)
+     */
+    private List<LogEvent> candidates(EventStore store) {
+        Condition lookup = mostSelective(store);
+        return lookup != null ? store.getIndexedEvents(lookup.attribute, lookup.value) : store.getAllEvents();
+    }
+
+    /**
+     * returns the indexed condition with the fewest candidates in {@code store} or {@code null} if it indexes none of them
+     */
+    private Condition mostSelective(EventStore store) {
+        Condition mostSelective = null;
+        int fewest = Integer.MAX_VALUE;
+        for (Condition condition : conditions) {
+            if (condition.attribute != null) {
+                int count = store.getIndexedCount(condition.attribute, condition.value);
+                if (count >= 0 && count < fewest) {
+                    mostSelective = condition;
+                    fewest = count;
+                }
+            }
+        }
+        return mostSelective;
+    }
+
+    private boolean matches(LogEvent event) {
+        for (Condition condition : conditions) {
+            if (!condition.predicate.test(event)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * one condition of a query; {@code attribute} is {@code null} if events can't be looked up by it
+     */
+    private static final class Condition {
+        private final EventAttribute attribute;
+        private final Object value;
+        private final Predicate<? super LogEvent> predicate;
+
+        Condition(EventAttribute attribute, Object value, Predicate<? super LogEvent> predicate) {
+            this.attribute = attribute;
+            this.value = value;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public String toString() {
+            return attribute != null ? attribute + "=" + value : String.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ronreynolds.test.logging;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * an append-only file of encoded events (see {@link EventCodec}) that's memory-mapped for its whole life; appended to by one
+ * thread at a time and read by any thread (records are never changed once written so readers don't lock).
+ * <p>
+ * the file is deleted by {@link #delete()}, once the segment is unreachable, or when the JVM exits (whichever is first); the
+ * mapping stays valid as long as something (e.g. a list returned by {@code getAllEvents()}) still references the segment, even
+ * after the file is deleted.
+ */
+final class EventSegment {
+    // deletes the files of segments that become unreachable before delete() succeeds
+    private static final Cleaner cleaner = Cleaner.create();
+
+    private final Path file;
+    private final MappedByteBuffer mapping;
+    // the appending thread's view of mapping (so readers never see its position change)
+    private final ByteBuffer appender;
+    // the offset of each record; replaced (never changed) when it grows so readers can use whichever array they see
+    private volatile int[] offsets = new int[1024];
+    // the number of records and the offset of the next one; only used by the appending thread
+    private int recordCount;
+    private int position;
+
+    private EventSegment(Path file, MappedByteBuffer mapping) {
+        this.file = file;
+        this.mapping = mapping;
+        this.appender = mapping.duplicate();
+        cleaner.register(this, () -> deleteFile(file));
+    }
+
+    /**
+     * creates a new segment file of {@code capacity} bytes in {@code directory}
+     */
+    static EventSegment create(Path directory, int capacity) {
+        try {
+            Files.createDirectories(directory);
+            Path file = Files.createTempFile(directory, "events-", ".segment");
+            file.toFile().deleteOnExit();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // the mapping outlives the channel
+                return new EventSegment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to create event segment in " + directory, e);
+        }
+    }
+
+    /**
+     * appends {@code record} (and returns {@code true}) if there's room for it
+     */
+    boolean tryAppend(ByteBuffer record) {
+        int length = record.remaining();
+        if (mapping.capacity() - position < length) {
+            return false;
+        }
+        appender.position(position);
+        appender.put(record);
+        int[] recordOffsets = offsets;
+        if (recordCount == recordOffsets.length) {
+            recordOffsets = Arrays.copyOf(recordOffsets, recordCount * 2);
+        }
+        recordOffsets[recordCount++] = position;
+        offsets = recordOffsets;
+        position += length;
+        return true;
+    }
+
+    /**
+     * the number of records appended (only accurate on the appending thread; readers use the count published by the store)
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * discards the records after the first {@code records} (ones appended but never published to readers)
+     */
+    void truncate(int records) {
+        if (records < recordCount) {
+            position = offsets[records];
+            recordCount = records;
+        }
+    }
+
+    int offset(int record) {
+        return offsets[record];
+    }
+
+    /**
+     * the mapped records (for reading with {@code EventCodec}'s absolute methods)
+     */
+    ByteBuffer records() {
+        return mapping;
+    }
+
+    /**
+     * deletes the file; readers still holding the segment can keep reading its records: on POSIX platforms an unlinked file's
+     * pages live as long as its mapping, and where a mapped file can't be deleted (Windows) it's deleted once the segment is
+     * unreachable instead
+     */
+    void delete() {
+        deleteFile(file);
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // still mapped on some platforms; removed once unreachable (or at exit) instead
+        }
+    }
+}
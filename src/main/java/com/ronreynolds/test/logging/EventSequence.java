@@ -0,0 +1,354 @@
+package com.ronreynolds.test.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * an ordered pattern of events (e.g. "A, then B, then eventually C with no ERROR in between, all with the same MDC
+ * requestId") matched against a chronological list of events in one pass.
+ * <p>
+ * the steps compile to a nondeterministic automaton whose state is the number of steps matched so far; the set of live states
+ * is kept as a bitmask so each event is tested once against the step each live state waits for, making a match
+ * O(events x steps) (and no event is looked at twice). {@link #then} steps may skip unrelated events, {@link #next} steps
+ * must be the very next event, {@link #without} kills a partial match if a forbidden event arrives before the next step, and
+ * {@link #times} repeats the last step. with {@link #correlatedBy(String)} each MDC value is matched separately (events
+ * without the key are ignored) so the steps of one request can't be satisfied by another's.
+ * <p>
+ * when nothing matches, {@code LogEventListAssert.containsSequence()} reports the longest partial match: the events it got through, the step it was
+ * waiting for, and what (if anything) ended it.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ EventSequence checkout = EventSequence.correlatedBy("requestId")
+    .then(EventMatcher.event().hasMessageTemplate("cart {} submitted"))
+    .next(EventMatcher.event().hasMessageTemplate("payment {} authorized"))
+    .without(EventMatcher.event().isLevel(Level.ERROR))
+    .then(EventMatcher.event().hasMessageTemplate("order {} shipped"));
+ assertThat(TestLogger.query().fromLogger("com.acme")).containsSequence(checkout);
+ </pre>
+ @formatter:on
+ */
+public final class EventSequence {
+    // states are bits of a long (state i = i steps matched)
+    private static final int MAX_STEPS = Long.SIZE - 1;
+
+    // the MDC key events are correlated by; null if they aren't
+    private final String correlationKey;
+    private final List<Step> steps = new ArrayList<>();
+    // without() conditions waiting for the step they precede
+    private final List<Condition> pendingExclusions = new ArrayList<>();
+
+    private EventSequence(String correlationKey) {
+        this.correlationKey = correlationKey;
+    }
+
+    /**
+     * a sequence matched across all events
+     */
+    public static EventSequence of() {
+        return new EventSequence(null);
+    }
+
+    /**
+     * a sequence whose steps must all be events with the same value of the MDC entry {@code mdcKey} (events without it are
+     * ignored)
+     */
+    public static EventSequence correlatedBy(String mdcKey) {
+        return new EventSequence(Objects.requireNonNull(mdcKey, "mdc key must not be null"));
+    }
+
+    /**
+     * the next step is an event matching {@code predicate} anywhere after the previous step (other events may come between)
+     */
+    public EventSequence then(Predicate<? super LogEvent> predicate) {
+        return then(String.valueOf(predicate), predicate);
+    }
+
+    public EventSequence then(String description, Predicate<? super LogEvent> predicate) {
+        return add(description, predicate, false);
+    }
+
+    /**
+     * the next step is an event matching {@code predicate} immediately after the previous step (with {@code correlatedBy} the
+     * next event with the same MDC value); as the first step it must be the first event
+     */
+    public EventSequence next(Predicate<? super LogEvent> predicate) {
+        return next(String.valueOf(predicate), predicate);
+    }
+
+    public EventSequence next(String description, Predicate<? super LogEvent> predicate) {
+        return add(description, predicate, true);
+    }
+
+    /**
+     * no event matching {@code predicate} may come between the previous step (or the start) and the next step
+     */
+    public EventSequence without(Predicate<? super LogEvent> predicate) {
+        return without(String.valueOf(predicate), predicate);
+    }
+
+    public EventSequence without(String description, Predicate<? super LogEvent> predicate) {
+        pendingExclusions.add(new Condition(Objects.requireNonNull(description, "description must not be null"),
+                                            Objects.requireNonNull(predicate, "predicate must not be null")));
+        return this;
+    }
+
+    /**
+     * the last step is matched {@code count} times in all (each repeat with the same contiguity and exclusions)
+     */
+    public EventSequence times(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive: " + count);
+        }
+        if (steps.isEmpty()) {
+            throw new IllegalStateException("times() must follow then() or next()");
+        }
+        Step last = steps.get(steps.size() - 1);
+        for (int i = 1; i < count; ++i) {
+            addStep(last);
+        }
+        return this;
+    }
+
+    /**
+     * returns the matched events (one per step) of the first match in {@code events} (which must be in the order they
+     * occurred); empty if there's no match
+     */
+    public List<LogEvent> find(List<? extends LogEvent> events) {
+        Match match = match(events);
+        return match.isComplete() ? match.getEvents() : List.of();
+    }
+
+    /**
+     * describes the steps
+     */
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("EventSequence[");
+        if (correlationKey != null) {
+            description.append("correlatedBy(").append(correlationKey).append(") ");
+        }
+        for (int i = 0; i < steps.size(); ++i) {
+            description.append(i == 0 ? "" : " ").append(steps.get(i));
+        }
+        return description.append("]").toString();
+    }
+
+    /**
+     * runs the automaton over {@code events} (in the order they occurred) until a correlation group completes every step
+     */
+    Match match(List<? extends LogEvent> events) {
+        if (steps.isEmpty()) {
+            throw new IllegalStateException("an EventSequence needs at least one then() or next() step");
+        }
+        if (!pendingExclusions.isEmpty()) {
+            throw new IllegalStateException("without() must be followed by then() or next()");
+        }
+        Map<String, Run> runs = new HashMap<>();
+        Run uncorrelated = correlationKey == null ? new Run(null) : null;
+        Match best = new Match(this, null, null, 0, null);
+        for (LogEvent event : events) {
+            Run run = uncorrelated;
+            if (run == null) {
+                String value = event.getContextMap().get(correlationKey);
+                if (value == null) {
+                    continue;
+                }
+                run = runs.computeIfAbsent(value, Run::new);
+            }
+            best = run.advance(event, best);
+            if (best.isComplete()) {
+                return best;
+            }
+        }
+        return best;
+    }
+
+    private EventSequence add(String description, Predicate<? super LogEvent> predicate, boolean immediate) {
+        Condition condition = new Condition(Objects.requireNonNull(description, "description must not be null"),
+                                            Objects.requireNonNull(predicate, "predicate must not be null"));
+        addStep(new Step(condition, immediate, List.copyOf(pendingExclusions)));
+        pendingExclusions.clear();
+        return this;
+    }
+
+    private void addStep(Step step) {
+        if (steps.size() == MAX_STEPS) {
+            throw new IllegalStateException("an EventSequence can have at most " + MAX_STEPS + " steps");
+        }
+        steps.add(step);
+    }
+
+    /**
+     * the automaton's live states for one correlation value; each live state keeps the events (newest first) that got it there
+     */
+    private final class Run {
+        private final String correlationValue;
+        private long states = 1;    // waiting for the first step
+        private PathNode[] paths = new PathNode[steps.size() + 1];
+        private PathNode[] nextPaths = new PathNode[steps.size() + 1];
+
+        Run(String correlationValue) {
+            this.correlationValue = correlationValue;
+        }
+
+        /**
+         * feeds {@code event} to every live state; returns the longest (partial) match so far (a complete one as soon as any
+         * state reaches the end)
+         */
+        Match advance(LogEvent event, Match best) {
+            long next = 0;
+            // most-advanced first so a state that's already live keeps its (earlier) events over one reaching it now
+            for (long live = states; live != 0; live &= ~Long.highestOneBit(live)) {
+                int state = Long.SIZE - 1 - Long.numberOfLeadingZeros(live);
+                Step step = steps.get(state);
+                PathNode path = paths[state];
+                if (step.condition.predicate.test(event)) {
+                    long reached = 1L << (state + 1);
+                    if ((next & reached) == 0) {
+                        next |= reached;
+                        nextPaths[state + 1] = new PathNode(event, path);
+                        if (state + 1 > best.matchedSteps) {
+                            best = new Match(EventSequence.this, correlationValue, nextPaths[state + 1], state + 1, null);
+                        }
+                    }
+                }
+                String ended = step.immediate ? "the next event didn't match" : step.excludedBy(event);
+                if (ended == null) {
+                    if ((next & (1L << state)) == 0) {
+                        next |= 1L << state;
+                        nextPaths[state] = path;
+                    }
+                } else if (state == best.matchedSteps && path == best.path && best.ended == null) {
+                    best = new Match(EventSequence.this, correlationValue, path, state, ended + ": " + event);
+                }
+            }
+            PathNode[] swap = paths;
+            paths = nextPaths;
+            nextPaths = swap;
+            states = next;
+            return best;
+        }
+    }
+
+    /**
+     * the outcome of matching: complete, or the longest partial match
+     */
+    static final class Match {
+        private final EventSequence sequence;
+        private final String correlationValue;
+        private final PathNode path;
+        private final int matchedSteps;
+        // why the partial match stopped advancing; null if it was still waiting when the events ran out
+        private final String ended;
+
+        Match(EventSequence sequence, String correlationValue, PathNode path, int matchedSteps, String ended) {
+            this.sequence = sequence;
+            this.correlationValue = correlationValue;
+            this.path = path;
+            this.matchedSteps = matchedSteps;
+            this.ended = ended;
+        }
+
+        boolean isComplete() {
+            return matchedSteps == sequence.steps.size();
+        }
+
+        /**
+         * the matched events in the order they occurred
+         */
+        List<LogEvent> getEvents() {
+            List<LogEvent> events = new ArrayList<>(matchedSteps);
+            for (PathNode node = path; node != null; node = node.previous) {
+                events.add(node.event);
+            }
+            Collections.reverse(events);
+            return events;
+        }
+
+        /**
+         * describes the longest partial match for a failure message
+         */
+        String describeFailure() {
+            StringBuilder failure = new StringBuilder();
+            failure.append("longest partial match: ").append(matchedSteps).append(" of ").append(sequence.steps.size())
+                   .append(" steps");
+            if (correlationValue != null) {
+                failure.append(" (").append(sequence.correlationKey).append('=').append(correlationValue).append(')');
+            }
+            List<LogEvent> events = getEvents();
+            for (int i = 0; i < events.size(); ++i) {
+                failure.append(String.format("%n  matched %s%n    by %s", sequence.steps.get(i), events.get(i)));
+            }
+            failure.append(String.format("%n  then waiting for %s", sequence.steps.get(matchedSteps)));
+            if (ended != null) {
+                failure.append(String.format("%n    but %s", ended));
+            }
+            return failure.toString();
+        }
+    }
+
+    /**
+     * a step of the sequence and the exclusions that apply while waiting for it
+     */
+    private static final class Step {
+        private final Condition condition;
+        // must be the very next (correlated) event
+        private final boolean immediate;
+        private final List<Condition> exclusions;
+
+        Step(Condition condition, boolean immediate, List<Condition> exclusions) {
+            this.condition = condition;
+            this.immediate = immediate;
+            this.exclusions = exclusions;
+        }
+
+        /**
+         * describes the exclusion {@code event} violates; {@code null} if none
+         */
+        String excludedBy(LogEvent event) {
+            for (Condition exclusion : exclusions) {
+                if (exclusion.predicate.test(event)) {
+                    return "excluded " + exclusion.description + " arrived";
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder description = new StringBuilder();
+            exclusions.forEach(exclusion -> description.append("without(").append(exclusion.description).append(") "));
+            return description.append(immediate ? "next(" : "then(").append(condition.description).append(')').toString();
+        }
+    }
+
+    private static final class Condition {
+        private final String description;
+        private final Predicate<? super LogEvent> predicate;
+
+        Condition(String description, Predicate<? super LogEvent> predicate) {
+            this.description = description;
+            this.predicate = predicate;
+        }
+    }
+
+    /**
+     * an event matched by a partial match; shared by the partial matches that extend it
+     */
+    private static final class PathNode {
+        private final LogEvent event;
+        private final PathNode previous;
+
+        PathNode(LogEvent event, PathNode previous) {
+            this.event = event;
+            this.previous = previous;
+        }
+    }
+}
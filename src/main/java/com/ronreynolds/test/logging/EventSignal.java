@@ -0,0 +1,104 @@
+package com.ronreynolds.test.logging;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * wakes threads waiting for a {@code TestLogger} to capture something (see {@code TestLogger.awaitEvent()}).
+ * <p>
+ * {@link #signal} is called for every captured event so when nobody is waiting it's one volatile read; otherwise the event is
+ * queued for each waiter capturing into the same {@code CaptureScope} so a waiter tests only the events captured since it last
+ * looked instead of rescanning the logger's events. waiters test events without holding the lock so a slow test never blocks
+ * a logging thread. a generation number bumped by each signal closes the window between a waiter's test and its park: a
+ * signal in that window makes the waiter test again instead of parking.
+ */
+final class EventSignal {
+    private final List<Waiter> waiters = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition captured = lock.newCondition();
+    // bumped (under the lock) by every signal that had a waiter to wake
+    private volatile long generation;
+
+    /**
+     * queues {@code event} (captured into {@code scope}, {@code null} if none) for the waiters on that scope and wakes every
+     * waiter (called after the event has been added to the store so woken waiters will see it)
+     */
+    void signal(CaptureScope scope, LogEvent event) {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        for (Waiter waiter : waiters) {
+            if (waiter.scope == scope) {
+                waiter.captured.add(event);
+            }
+        }
+        lock.lock();
+        try {
+            ++generation;
+            captured.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * calls {@code scan} once then {@code test} with each event captured into {@code scope} (possibly including some that
+     * {@code scan} saw) until one of them returns non-{@code null} or {@code timeout} elapses; if the thread is interrupted it
+     * stops waiting (leaving the interrupt set)
+     * @return the last result of {@code scan} or {@code test} ({@code null} if the wait timed out or was interrupted)
+     */
+    <T> T await(CaptureScope scope, Supplier<T> scan, Function<LogEvent, T> test, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        // registered before the scan so any event the scan misses is queued
+        Waiter waiter = new Waiter(scope);
+        waiters.add(waiter);
+        try {
+            T result = scan.get();
+            while (result == null) {
+                long seen = generation;
+                LogEvent event;
+                while (result == null && (event = waiter.captured.poll()) != null) {
+                    result = test.apply(event);
+                }
+                long remaining = deadline - System.nanoTime();
+                if (result != null || remaining <= 0) {
+                    return result;
+                }
+                lock.lock();
+                try {
+                    if (generation == seen) {
+                        captured.await(remaining, TimeUnit.NANOSECONDS);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            waiters.remove(waiter);
+        }
+    }
+
+    /**
+     * one waiting thread's queue of the events captured into its scope since it last tested them
+     */
+    private static final class Waiter {
+        private final CaptureScope scope;
+        private final Queue<LogEvent> captured = new ConcurrentLinkedQueue<>();
+
+        Waiter(CaptureScope scope) {
+            this.scope = scope;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.ronreynolds.test.logging;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * an immutable, chronologically ordered view of the events in a {@code LogEventBuffer} as they were when the view was created;
+ * what {@code ChronologicalEventStore} returns instead of a copy so reading a level of a 1M-event logger doesn't copy (or sort)
+ * 1M events.
+ * <p>
+ * a buffer is only roughly in chronological order: racing threads append a little out of order, and a thread descheduled
+ * between creating its event and appending it appends an older event. so each buffer keeps its latest view and a new view
+ * extends it: only the events appended since are copied and sorted, then merged into the end of the previous view's sorted
+ * runs where they overlap (usually just the last few events; earlier runs are shared, never copied). a run is merged into the
+ * one before it once it's at least half that one's size, so there are O(log n) runs, creating a view costs amortized
+ * O(log n) per event appended since the previous one, and {@code get()} is a binary search over the runs.
+ * <p>
+ * views are never filtered: a buffer only holds events that were visible when they were appended (see
+ * {@code ChronologicalEventStore.add()}) and a clear seals and replaces the buffer rather than modifying it.
+ */
+final class EventSnapshot extends AbstractList<LogEvent> implements RandomAccess {
+    static final EventSnapshot EMPTY = new EventSnapshot(new Run[0], new int[0]);
+
+    // in chronological order end to end
+    private final Run[] runs;
+    // the index (in this view) just past each run's last event
+    private final int[] ends;
+
+    private EventSnapshot(Run[] runs, int[] ends) {
+        this.runs = runs;
+        this.ends = ends;
+    }
+
+    /**
+     * returns a view of {@code buffer}'s events (including every event appended before the call), extending and caching the
+     * buffer's latest view
+     */
+    static EventSnapshot of(LogEventBuffer buffer) {
+        EventSnapshot latest = buffer.getSnapshot();
+        int size = buffer.size();
+        int viewed = latest.size();
+        if (viewed >= size) {
+            return latest;  // another thread has already extended it this far (or further)
+        }
+        LogEvent[] appended = new LogEvent[size - viewed];
+        for (int i = 0; i < appended.length; ++i) {
+            appended[i] = buffer.get(viewed + i);
+        }
+        EventOrder.restore(appended, appended.length);
+        EventSnapshot extended = latest.append(new Run(appended, 0, appended.length));
+        buffer.setSnapshot(extended);
+        return extended;
+    }
+
+    @Override
+    public LogEvent get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for size " + size());
+        }
+        if (runs.length == 1) {
+            return runs[0].events[runs[0].from + index];
+        }
+        int run = Arrays.binarySearch(ends, index + 1);
+        run = run >= 0 ? run : -run - 1;    // the first run ending after index
+        return runs[run].events[runs[run].from + index - (run == 0 ? 0 : ends[run - 1])];
+    }
+
+    @Override
+    public int size() {
+        return ends.length == 0 ? 0 : ends[ends.length - 1];
+    }
+
+    /**
+     * returns the events not hidden by a clear (per {@code watermarks}), in chronological order (reusing {@code events})
+     */
+    static List<LogEvent> visible(LogEvent[] events, int size, long[] watermarks) {
+        int visible = 0;
+        for (int i = 0; i < size; ++i) {
+            LogEvent event = events[i];
+            if (event.getNanoTime() > watermarks[event.getLevel().ordinal()]) {
+                events[visible++] = event;
+            }
+        }
+        return EventOrder.toList(events, visible);
+    }
+
+    /**
+     * returns this view followed by the (ordered) {@code run}: the ends of the runs that {@code run} overlaps are merged into
+     * it, then runs at most twice the size of the run after them are concatenated with it
+     */
+    private EventSnapshot append(Run run) {
+        int kept = runs.length;
+        Run head = null;
+        while (kept > 0 && EventOrder.CHRONOLOGICAL.compare(runs[kept - 1].last(), run.first()) > 0) {
+            Run previous = runs[--kept];
+            int split = previous.upperBound(run.first());
+            run = Run.merge(previous, split, run);
+            if (split > previous.from) {
+                head = new Run(previous.events, previous.from, split);
+                break;
+            }
+        }
+        Run[] appended = Arrays.copyOf(runs, kept + (head == null ? 1 : 2));
+        if (head != null) {
+            appended[kept++] = head;
+        }
+        appended[kept++] = run;
+        while (kept > 1 && appended[kept - 2].size() <= 2 * appended[kept - 1].size()) {
+            appended[kept - 2] = Run.merge(appended[kept - 2], appended[kept - 2].from, appended[kept - 1]);
+            --kept;
+        }
+        Run[] coalesced = kept == appended.length ? appended : Arrays.copyOf(appended, kept);
+        int[] runEnds = new int[kept];
+        for (int i = 0, end = 0; i < kept; ++i) {
+            end += coalesced[i].size();
+            runEnds[i] = end;
+        }
+        return new EventSnapshot(coalesced, runEnds);
+    }
+
+    /**
+     * events {@code from} (inclusive) to {@code to} (exclusive) of {@code events}, in chronological order; never modified
+     * once created (views split from it share its array)
+     */
+    private static final class Run {
+        private final LogEvent[] events;
+        private final int from;
+        private final int to;
+
+        Run(LogEvent[] events, int from, int to) {
+            this.events = events;
+            this.from = from;
+            this.to = to;
+        }
+
+        int size() {
+            return to - from;
+        }
+
+        LogEvent first() {
+            return events[from];
+        }
+
+        LogEvent last() {
+            return events[to - 1];
+        }
+
+        /**
+         * the index of the first event after {@code event} (which must be before {@code last()})
+         */
+        int upperBound(LogEvent event) {
+            int low = from;
+            int high = to - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (EventOrder.CHRONOLOGICAL.compare(events[middle], event) > 0) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * merges {@code previous}'s events from {@code start} with all of {@code run}'s into a new run
+         */
+        static Run merge(Run previous, int start, Run run) {
+            LogEvent[] merged = new LogEvent[previous.to - start + run.size()];
+            int p = start;
+            int r = run.from;
+            for (int i = 0; i < merged.length; ++i) {
+                if (r == run.to
+                    || (p < previous.to && EventOrder.CHRONOLOGICAL.compare(previous.events[p], run.events[r]) <= 0)) {
+                    merged[i] = previous.events[p++];
+                } else {
+                    merged[i] = run.events[r++];
+                }
+            }
+            return new Run(merged, 0, merged.length);
+        }
+    }
+}
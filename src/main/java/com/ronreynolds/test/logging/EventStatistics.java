@@ -0,0 +1,218 @@
+package com.ronreynolds.test.logging;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collector;
+import org.slf4j.event.Level;
+
+/**
+ * summary statistics of a set of events: counts (in total and by level, logger, message template, and thread), the first and
+ * last event, and the distinct threads that logged them. threads are told apart by id (their names are only for display).
+ * computed by streaming over the events (see {@link #collector()}) so no copy of them is made;
+ * {@code TestLogger.getAllEventStatistics()} computes one across every logger as a parallel reduction.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ EventStatistics stats = TestLogger.getAllEventStatistics();
+ assertThat(stats.getCount(Level.ERROR)).isZero();
+ assertThat(stats.getDistinctThreadCount()).isEqualTo(8);
+ EventStatistics tenantStats = TestLogger.query().withMdc("tenant", "42").stream().collect(EventStatistics.collector());
+ </pre>
+ @formatter:on
+ */
+public final class EventStatistics {
+    private static final EventStatistics EMPTY = new EventStatistics(new Accumulator());
+
+    private final long count;
+    private final Map<Level, Long> countsByLevel;
+    private final Map<String, Long> countsByLogger;
+    private final Map<String, Long> countsByTemplate;
+    private final Map<Long, Long> countsByThreadId;
+    private final Map<Long, String> threadNames;
+    private final Map<String, Long> countsByThread;
+    private final LogEvent firstEvent;
+    private final LogEvent lastEvent;
+
+    private EventStatistics(Accumulator accumulator) {
+        this.count = accumulator.count;
+        this.countsByLevel = Map.copyOf(accumulator.countsByLevel);
+        this.countsByLogger = Map.copyOf(accumulator.countsByLogger);
+        this.countsByTemplate = Map.copyOf(accumulator.countsByTemplate);
+        this.countsByThreadId = Map.copyOf(accumulator.countsByThreadId);
+        this.threadNames = Map.copyOf(accumulator.threadNames);
+        Map<String, Long> countsByThreadName = new HashMap<>();
+        countsByThreadId.forEach((threadId, count) -> countsByThreadName.merge(threadNames.get(threadId), count, Long::sum));
+        this.countsByThread = Map.copyOf(countsByThreadName);
+        this.firstEvent = accumulator.firstEvent;
+        this.lastEvent = accumulator.lastEvent;
+    }
+
+    /**
+     * statistics of no events
+     */
+    public static EventStatistics empty() {
+        return EMPTY;
+    }
+
+    /**
+     * collects a stream of events into their statistics (concurrently for a parallel stream)
+     */
+    public static Collector<LogEvent, ?, EventStatistics> collector() {
+        return Collector.of(Accumulator::new, Accumulator::add, Accumulator::combine, Accumulator::finish,
+                            Collector.Characteristics.UNORDERED);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getCount(Level level) {
+        return countsByLevel.getOrDefault(Objects.requireNonNull(level, "null level not allowed"), 0L);
+    }
+
+    /**
+     * counts by level (levels without events are absent)
+     */
+    public Map<Level, Long> getCountsByLevel() {
+        return countsByLevel;
+    }
+
+    public Map<String, Long> getCountsByLogger() {
+        return countsByLogger;
+    }
+
+    /**
+     * counts by message template (events without a template aren't counted)
+     */
+    public Map<String, Long> getCountsByTemplate() {
+        return countsByTemplate;
+    }
+
+    /**
+     * counts by the id ({@link LogEvent#getThreadId()}) of the thread that logged them
+     */
+    public Map<Long, Long> getCountsByThreadId() {
+        return countsByThreadId;
+    }
+
+    /**
+     * the name the thread with {@code threadId} logged (one of) its events under; {@code null} if it logged none of them
+     */
+    public String getThreadName(long threadId) {
+        return threadNames.get(threadId);
+    }
+
+    /**
+     * counts by the name of the thread that logged them, for display; threads that share a name (e.g. those of pools with the
+     * same name) are counted together so use {@link #getCountsByThreadId()} to tell threads apart
+     */
+    public Map<String, Long> getCountsByThread() {
+        return countsByThread;
+    }
+
+    /**
+     * the number of threads (by id, so threads sharing a name are counted separately) that logged the events
+     */
+    public int getDistinctThreadCount() {
+        return countsByThreadId.size();
+    }
+
+    /**
+     * the earliest event; {@code null} if there are none
+     */
+    public LogEvent getFirstEvent() {
+        return firstEvent;
+    }
+
+    /**
+     * the latest event; {@code null} if there are none
+     */
+    public LogEvent getLastEvent() {
+        return lastEvent;
+    }
+
+    public Instant getFirstTimestamp() {
+        return firstEvent != null ? firstEvent.getTimestamp() : null;
+    }
+
+    public Instant getLastTimestamp() {
+        return lastEvent != null ? lastEvent.getTimestamp() : null;
+    }
+
+    @Override
+    public String toString() {
+        Map<Level, Long> levelCounts = new EnumMap<>(Level.class);
+        levelCounts.putAll(countsByLevel);
+        return String.format("EventStatistics[count=%d %s, loggers=%d, templates=%d, threads=%d, first=%s, last=%s]", count,
+                             levelCounts, countsByLogger.size(), countsByTemplate.size(), countsByThreadId.size(),
+                             getFirstTimestamp(), getLastTimestamp());
+    }
+
+    /**
+     * the mutable statistics of part of the events (e.g. one logger's); combined into the statistics of all of them
+     */
+    static final class Accumulator {
+        private long count;
+        private final Map<Level, Long> countsByLevel = new EnumMap<>(Level.class);
+        private final Map<String, Long> countsByLogger = new HashMap<>();
+        private final Map<String, Long> countsByTemplate = new HashMap<>();
+        private final Map<Long, Long> countsByThreadId = new HashMap<>();
+        private final Map<Long, String> threadNames = new HashMap<>();
+        private LogEvent firstEvent;
+        private LogEvent lastEvent;
+
+        void add(LogEvent event) {
+            ++count;
+            countsByLevel.merge(event.getLevel(), 1L, Long::sum);
+            countsByLogger.merge(event.getLoggerName(), 1L, Long::sum);
+            if (event.getMessage() != null) {
+                countsByTemplate.merge(event.getMessage(), 1L, Long::sum);
+            }
+            if (countsByThreadId.merge(event.getThreadId(), 1L, Long::sum) == 1L) {
+                threadNames.put(event.getThreadId(), event.getThreadName());
+            }
+            firstEvent = first(firstEvent, event);
+            lastEvent = last(lastEvent, event);
+        }
+
+        /**
+         * adds {@code other}'s counts to this one's (the larger maps are kept so combining stays cheap)
+         */
+        Accumulator combine(Accumulator other) {
+            if (other.count > count) {
+                return other.combine(this);
+            }
+            count += other.count;
+            addAll(countsByLevel, other.countsByLevel);
+            addAll(countsByLogger, other.countsByLogger);
+            addAll(countsByTemplate, other.countsByTemplate);
+            addAll(countsByThreadId, other.countsByThreadId);
+            other.threadNames.forEach(threadNames::putIfAbsent);
+            if (other.firstEvent != null) {
+                firstEvent = first(firstEvent, other.firstEvent);
+                lastEvent = last(lastEvent, other.lastEvent);
+            }
+            return this;
+        }
+
+        EventStatistics finish() {
+            return count == 0 ? EMPTY : new EventStatistics(this);
+        }
+
+        private static <K> void addAll(Map<K, Long> counts, Map<K, Long> moreCounts) {
+            moreCounts.forEach((key, count) -> counts.merge(key, count, Long::sum));
+        }
+
+        private static LogEvent first(LogEvent current, LogEvent candidate) {
+            return current == null || EventOrder.CHRONOLOGICAL.compare(candidate, current) < 0 ? candidate : current;
+        }
+
+        private static LogEvent last(LogEvent current, LogEvent candidate) {
+            return current == null || EventOrder.CHRONOLOGICAL.compare(candidate, current) > 0 ? candidate : current;
+        }
+    }
+}
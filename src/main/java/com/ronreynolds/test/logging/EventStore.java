@@ -0,0 +1,81 @@
+package com.ronreynolds.test.logging;
+
+import java.util.List;
+import java.util.Map;
+import org.slf4j.event.Level;
+
+/**
+ * the storage behind a {@code TestLogger}; created by {@link RetentionPolicy#newEventStore()}.
+ * all methods are thread-safe and all returned collections are immutable (copies or snapshot views that later appends and
+ * clears don't change).
+ */
+interface EventStore {
+    // retained bytes of a captured LogEvent (with its Instant and a one-arg array) measured with the heap stores
+    int EVENT_BYTES_ESTIMATE = 136;
+
+    RetentionPolicy getRetentionPolicy();
+
+    void add(LogEvent event);
+
+    List<LogEvent> getEventsAtLevel(Level level);
+
+    /**
+     * returns all retained events in the order they occurred
+     */
+    List<LogEvent> getAllEvents();
+
+    Map<Level, List<LogEvent>> getLogEventMap();
+
+    void clearEventsAtLevel(Level level);
+
+    void reset();
+
+    /**
+     * as {@link #reset()} but clearing the events created at or before {@code watermark} (an {@code EventOrder.watermark()})
+     * so {@code TestLogger.resetAll()} waits for the clock once rather than once per store; stores that don't clear by
+     * watermark just reset
+     */
+    default void reset(long watermark) {
+        reset();
+    }
+
+    /**
+     * the number of events at {@code level} evicted by the retention policy (since the level was last cleared)
+     */
+    long getDroppedCount(Level level);
+
+    /**
+     * the number of events evicted by the retention policy across all levels
+     */
+    long getDroppedCount();
+
+    /**
+     * returns the retained events whose {@code attribute} has {@code value} in the order they occurred or {@code null} if this
+     * store doesn't index {@code attribute} (so the caller has to filter {@link #getAllEvents()})
+     */
+    default List<LogEvent> getIndexedEvents(EventAttribute attribute, Object value) {
+        return null;
+    }
+
+    /**
+     * returns (an upper bound on) the number of events {@link #getIndexedEvents} would return or -1 if this store doesn't index
+     * {@code attribute}; used to pick the most selective index for a query
+     */
+    default int getIndexedCount(EventAttribute attribute, Object value) {
+        return -1;
+    }
+
+    /**
+     * returns (an upper bound on) the number of retained events
+     */
+    default int getEventCount() {
+        return getAllEvents().size();
+    }
+
+    /**
+     * returns an estimate of the heap retained by the events in this store (for {@code CaptureMetrics})
+     */
+    default long getRetainedBytesEstimate() {
+        return (long) getEventCount() * EVENT_BYTES_ESTIMATE;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Objects;
+
+/**
+ * the thread an event was logged on: its name, id, and whether it's a virtual thread. virtual threads are unnamed by default
+ * (e.g. those of {@code Executors.newVirtualThreadPerTaskExecutor()}) so an unnamed virtual thread is named
+ * {@code virtual-<id>} to tell its events from other virtual threads'.
+ * <p>
+ * cached per thread (and revalidated against the thread's name, which can change) so a thread's events share one instance
+ * and the compact store's thread dictionary finds it without allocating.
+ */
+final class EventThread {
+    private static final ThreadLocal<EventThread> lastThread = new ThreadLocal<>();
+
+    private final String name;
+    private final long id;
+    private final boolean virtual;
+    // the name the Thread had (differs from name for unnamed virtual threads)
+    private final String threadName;
+
+    EventThread(String name, long id, boolean virtual) {
+        this(name, id, virtual, name);
+    }
+
+    private EventThread(String name, long id, boolean virtual, String threadName) {
+        this.name = name;
+        this.id = id;
+        this.virtual = virtual;
+        this.threadName = threadName;
+    }
+
+    /**
+     * returns the calling thread's identity
+     */
+    static EventThread current() {
+        Thread thread = Thread.currentThread();
+        String threadName = thread.getName();
+        EventThread last = lastThread.get();
+        if (last != null && last.threadName.equals(threadName)) {
+            return last;
+        }
+        long id = ThreadIdentity.id(thread);
+        boolean virtual = ThreadIdentity.isVirtual(thread);
+        String name = virtual && threadName.isEmpty() ? "virtual-" + id : threadName;
+        EventThread current = new EventThread(name, id, virtual, threadName);
+        lastThread.set(current);
+        return current;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EventThread)) {
+            return false;
+        }
+        EventThread other = (EventThread) o;
+        return id == other.id && virtual == other.virtual && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id) * 31 + Objects.hashCode(name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,87 @@
+package com.ronreynolds.test.logging;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.slf4j.event.Level;
+
+/**
+ * an {@code EventStore} that keeps a separate {@code LogEventRing} per level; used for the per-level policy
+ */
+final class LevelEventStore implements EventStore {
+    private final RetentionPolicy retentionPolicy;
+    private final Supplier<LogEventRing> bufferFactory;
+    // lock-free lists of LogEvents by Level
+    private final Map<Level, LogEventRing> logEventMap = new ConcurrentHashMap<>();
+
+    LevelEventStore(RetentionPolicy retentionPolicy, Supplier<LogEventRing> bufferFactory) {
+        this.retentionPolicy = retentionPolicy;
+        this.bufferFactory = bufferFactory;
+    }
+
+    @Override
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    @Override
+    public void add(LogEvent event) {
+        LogEventRing eventList = logEventMap.get(event.getLevel());
+        if (eventList == null) {
+            // only the first event at each level pays for computeIfAbsent (which locks a map bin)
+            eventList = logEventMap.computeIfAbsent(event.getLevel(), ignore -> bufferFactory.get());
+        }
+        eventList.add(event);
+    }
+
+    @Override
+    public List<LogEvent> getEventsAtLevel(Level level) {
+        LogEventRing eventList = logEventMap.get(level);
+        return eventList != null ? eventList.toList() : List.of();
+    }
+
+    @Override
+    public List<LogEvent> getAllEvents() {
+        // each level is already chronological so a k-way merge is enough
+        return EventOrder.merge(logEventMap.values().stream().map(LogEventRing::toList).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Map<Level, List<LogEvent>> getLogEventMap() {
+        Map<Level, List<LogEvent>> copy = new EnumMap<>(Level.class);
+        logEventMap.forEach((level, eventList) -> copy.put(level, eventList.toList()));
+        return Map.copyOf(copy);
+    }
+
+    @Override
+    public void clearEventsAtLevel(Level level) {
+        // clearing swaps in an empty ring; an add() that fetched the old ring before the swap appends to the discarded ring
+        // so its event is cleared too (as though it had been logged before the clear)
+        logEventMap.computeIfPresent(Objects.requireNonNull(level, "null level not allowed"), (ignore, old) -> bufferFactory.get());
+    }
+
+    @Override
+    public void reset() {
+        logEventMap.clear();
+    }
+
+    @Override
+    public long getDroppedCount(Level level) {
+        LogEventRing eventList = logEventMap.get(level);
+        return eventList != null ? eventList.getDroppedCount() : 0;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return logEventMap.values().stream().mapToLong(LogEventRing::getDroppedCount).sum();
+    }
+
+    @Override
+    public int getEventCount() {
+        return logEventMap.values().stream().mapToInt(LogEventRing::size).sum();
+    }
+}
@@ -1,51 +1,69 @@
 package com.ronreynolds.test.logging;
 
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
-import org.slf4j.MDC;
 import org.slf4j.Marker;
 import org.slf4j.event.Level;
-import org.slf4j.helpers.MessageFormatter;
 
 /**
  * based on log4j2's LogEvent
  */
 public class LogEvent {
-    private static final AtomicInteger idCount = new AtomicInteger();
+    // stack frames rendered by toString(); read once rather than per event
+    private static final int STACK_DEPTH_LIMIT = Integer.getInteger("TestLogger.stackLimit", 10);
+    // thread-safe so one instance formats every event's timestamp
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME.withZone(ZoneOffset.UTC);
 
-    private final int eventId = idCount.incrementAndGet(); // for sorting LogEvent by occurrence order
+    private final long sequence; // unique; orders events created in the same clock tick (see EventOrder)
     private final Map<String, String> contextMap;
     private final Level level;
     private final String loggerName;
     private Marker marker;
     private final String message;
     private Object[] messageArgs;
+    // getFormattedMessage() memo; reset whenever messageArgs changes
+    private String formattedMessage;
+    private final Instant timestamp;
     private final long timeMillis;
+    // System.nanoTime() when the event was created; for measuring the time between events
+    private final long nanoTime;
     private final StackTraceElement source;
-    private final String threadName;
+    private final EventThread thread;
     private Throwable thrown;
+    // getThrownData() memo; reset whenever thrown changes
+    private String thrownData;
 
     LogEvent(Level level, String loggerName, String message) {
         this(level, loggerName, null, message, null, null);
     }
 
     LogEvent(Level level, String loggerName, Marker marker, String message, Object[] msgArgs, Throwable thrown) {
-        Map<String,String> mdc = MDC.getCopyOfContextMap(); // some implementations return a null Map if there's no MDC data
-        this.contextMap = mdc != null ? mdc : Map.of();
+        this(level, loggerName, marker, message, msgArgs, thrown, null);
+    }
+
+    /**
+     * @param caller where the log call came from (see {@code CallerCapture}); if {@code null} the source is the top frame of
+     * {@code thrown}
+     */
+    LogEvent(Level level, String loggerName, Marker marker, String message, Object[] msgArgs, Throwable thrown,
+             StackTraceElement caller) {
+        this.sequence = Sequencer.next();
+        this.contextMap = MdcSnapshot.current(); // shared with other events from this thread while the MDC is unchanged
         this.level = level;
         this.loggerName = loggerName;
         this.marker = marker;
         this.message = message;
-        this.timeMillis = System.currentTimeMillis();
-        this.source = getStackTopElement(thrown).orElse(null);
-        this.threadName = Thread.currentThread().getName();
+        this.nanoTime = System.nanoTime();
+        this.timestamp = Instant.now();   // as precise as the platform clock allows (typically microseconds)
+        this.timeMillis = timestamp.toEpochMilli();
+        this.source = caller != null ? caller : getStackTopElement(thrown).orElse(null);
+        this.thread = EventThread.current();  // shared with other events from this thread
         if (thrown != null) {
             this.thrown = thrown;
             this.messageArgs = msgArgs;
@@ -64,23 +82,44 @@ public class LogEvent {
         }
     }
 
+    /**
+     * recreates an event read back from disk (see {@code EventCodec}); keeps the original's sequence number and timestamps
+     */
+    LogEvent(long sequence, Level level, String loggerName, Marker marker, String message, Object[] messageArgs,
+             Instant timestamp, long nanoTime, StackTraceElement source, EventThread thread, Throwable thrown,
+             Map<String, String> contextMap) {
+        this.sequence = sequence;
+        this.contextMap = contextMap;
+        this.level = level;
+        this.loggerName = loggerName;
+        this.marker = marker;
+        this.message = message;
+        this.messageArgs = messageArgs;
+        this.timestamp = timestamp;
+        this.timeMillis = timestamp.toEpochMilli();
+        this.nanoTime = nanoTime;
+        this.source = source;
+        this.thread = thread;
+        this.thrown = thrown;
+    }
+
     LogEvent withMsgArgs(Object arg) {
-        this.messageArgs = new Object[]{arg};
-        return this;
+        return withMsgArgs(new Object[]{arg});
     }
 
     LogEvent withMsgArgs(Object arg1, Object arg2) {
-        this.messageArgs = new Object[]{arg1, arg2};
-        return this;
+        return withMsgArgs(new Object[]{arg1, arg2});
     }
 
     LogEvent withMsgArgs(Object[] args) {
         this.messageArgs = args;
+        this.formattedMessage = null;
         return this;
     }
 
     LogEvent withThrown(Throwable t) {
         this.thrown = t;
+        this.thrownData = null;
         return this;
     }
 
@@ -109,8 +148,18 @@ public class LogEvent {
         return message;
     }
 
+    /**
+     * the message with its args substituted (identical to {@code MessageFormatter.arrayFormat(message, args).getMessage()});
+     * formatted on first use then memoized
+     */
     public String getFormattedMessage() {
-        return MessageFormatter.arrayFormat(message, messageArgs).getMessage();
+        String formatted = formattedMessage;
+        if (formatted == null) {
+            // racing threads compute the same String so the unsynchronized memo is harmless
+            formatted = MessageTemplate.format(message, messageArgs);
+            formattedMessage = formatted;
+        }
+        return formatted;
     }
 
     public Object[] getMessageArgs() {
@@ -121,43 +170,126 @@ public class LogEvent {
         return timeMillis;
     }
 
+    /**
+     * the wall-clock time the event was logged (with the platform clock's precision rather than just milliseconds)
+     */
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * {@code System.nanoTime()} when the event was logged; only meaningful relative to other events' (or other
+     * {@code System.nanoTime()} values) but unaffected by wall-clock adjustments
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
     private String getTimeString() {
-        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.of("UTC")));
+        return TIMESTAMP_FORMAT.format(timestamp);
     }
 
     public StackTraceElement getSource() {
         return source;
     }
 
+    /**
+     * the name of the thread the event was logged on; {@code virtual-<id>} for an unnamed virtual thread
+     */
     public String getThreadName() {
-        return threadName;
+        return thread.getName();
+    }
+
+    /**
+     * the id of the thread the event was logged on ({@code Thread.threadId()} on Java 21+)
+     */
+    public long getThreadId() {
+        return thread.getId();
+    }
+
+    /**
+     * whether the event was logged on a virtual thread (always {@code false} before Java 21)
+     */
+    public boolean isVirtualThread() {
+        return thread.isVirtual();
+    }
+
+    EventThread getThread() {
+        return thread;
     }
 
     public Throwable getThrown() {
         return thrown;
     }
 
+    /**
+     * the event's unique sequence number; increases with each event a thread logs but (since each thread draws from its own
+     * block of numbers) doesn't order events from different threads; see {@link #chronologicalOrder()}
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * the low 32 bits of {@link #getSequence()}.
+     * <p>
+     * <b>this is not the id it used to be</b>: ids were once handed out by one global counter so they were gap-free and
+     * ordered events across threads. sequence numbers are drawn from per-thread blocks so across threads they're neither:
+     * an event logged later on another thread can have a lower id, and the ids of one test's events skip the blocks other
+     * threads hold. code that sorted by, subtracted, or counted ids has to move to {@link #chronologicalOrder()} (and the
+     * lists' indexes for counting).
+     * @deprecated use {@link #getSequence()} to identify an event and {@link #chronologicalOrder()} to order events
+     */
+    @Deprecated
     public int getEventId() {
-        return eventId;
+        return (int) sequence;
+    }
+
+    /**
+     * orders events by when they were created ({@code getNanoTime()}) and, within a clock tick, by sequence number; the order
+     * of {@code TestLogger.getAllEvents()} and every other list of events returned
+     */
+    public static Comparator<LogEvent> chronologicalOrder() {
+        return EventOrder.CHRONOLOGICAL;
+    }
+
+    /**
+     * events are equal if they have the same sequence number (i.e. are the same event even if one was read back from disk)
+     */
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof LogEvent && sequence == ((LogEvent) o).sequence;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(sequence);
     }
 
     @Override
     public String toString() {
-        return String.format("%5s %s [%s] %s - %s%s", level, getTimeString(), threadName, loggerName, getFormattedMessage(),
+        return String.format("%5s %s [%s] %s - %s%s", level, getTimeString(), thread, loggerName, getFormattedMessage(),
                              thrown != null ? "\n" + getThrownData() : "");
     }
 
+    /**
+     * the thrown and its top stack frames as rendered by {@code toString()}; rendered once per event
+     */
     CharSequence getThrownData() {
         Objects.requireNonNull(thrown);
-        StringBuilder buf = new StringBuilder();
-        buf.append(thrown);
-        int stackDepthLimit = Integer.getInteger("TestLogger.stackLimit", 10);
-        StackTraceElement[] stack = thrown.getStackTrace();
-        Arrays.stream(stack).limit(stackDepthLimit).forEach(element -> buf.append("\n\t@ ").append(element));
-        if (stack.length > stackDepthLimit) {
-            buf.append("\n\t...");
+        String data = thrownData;
+        if (data == null) {
+            StringBuilder buf = new StringBuilder();
+            buf.append(thrown);
+            StackTraceElement[] stack = thrown.getStackTrace();
+            Arrays.stream(stack).limit(STACK_DEPTH_LIMIT).forEach(element -> buf.append("\n\t@ ").append(element));
+            boolean truncated = thrown instanceof CapturedThrowable && ((CapturedThrowable) thrown).getOmittedFrameCount() > 0;
+            if (stack.length > STACK_DEPTH_LIMIT || truncated) {
+                buf.append("\n\t...");
+            }
+            thrownData = data = buf.toString();
         }
-        return buf;
+        return data;
     }
 
     static Optional<StackTraceElement> getStackTopElement(Throwable t) {
@@ -178,6 +178,34 @@ public class LogEventAssert extends AbstractAssert<LogEventAssert, LogEvent> {
         return myself;
     }
 
+    /**
+     * assert that the event's source (see {@code CallerCapture}) is in the specified class
+     */
+    public LogEventAssert hasSourceClass(Class<?> sourceClass) {
+        return hasSourceClass(sourceClass.getName());
+    }
+
+    public LogEventAssert hasSourceClass(String className) {
+        isNotNull();
+        StackTraceElement source = actual.getSource();
+        Assertions.assertThat(source != null ? source.getClassName() : null)
+                .withFailMessage("Source class mismatch; actual %s is not in %s", source, className)
+                .isEqualTo(className);
+        return myself;
+    }
+
+    /**
+     * assert that the event's source (see {@code CallerCapture}) is in the specified method
+     */
+    public LogEventAssert hasSourceMethod(String methodName) {
+        isNotNull();
+        StackTraceElement source = actual.getSource();
+        Assertions.assertThat(source != null ? source.getMethodName() : null)
+                .withFailMessage("Source method mismatch; actual %s is not in %s", source, methodName)
+                .isEqualTo(methodName);
+        return myself;
+    }
+
         public LogEventAssert hasThreadName (String name){
             isNotNull();
             String threadName = actual.getThreadName();
@@ -0,0 +1,149 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * lock-free unbounded append-only list of {@code LogEvent}s; backs the chronological log and per-level indexes of a
+ * {@code TestLogger} with the default (unbounded) {@code RetentionPolicy}.
+ * <p>
+ * storage is a fixed directory of buckets whose sizes double (16, 32, 64, ...) so no existing bucket is ever copied or
+ * replaced while appending; an append is one {@code getAndIncrement} to reserve a slot plus one volatile store to publish it.
+ * readers wait for any reserved-but-unpublished slot below the size they read so they always see a gap-free prefix.
+ * <p>
+ * once {@link #seal() sealed} a buffer's contents are final and appends fail; that's how a store replaces a buffer without
+ * losing an append that races with the replacement (the appending thread retries on the replacement).
+ */
+final class LogEventBuffer {
+    private static final int FIRST_BUCKET_SHIFT = 4;
+    private static final int FIRST_BUCKET_SIZE = 1 << FIRST_BUCKET_SHIFT;
+    // set in reserved once sealed (so a buffer holds fewer than 2^30 events)
+    private static final int SEALED = 1 << 30;
+    private static final int MAX_SIZE = SEALED - FIRST_BUCKET_SIZE;
+    // enough buckets to address MAX_SIZE events
+    private static final int BUCKET_COUNT = Integer.SIZE - 2 - FIRST_BUCKET_SHIFT;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<LogEvent>> buckets = new AtomicReferenceArray<>(BUCKET_COUNT);
+    // number of reserved slots (some of which may not be published yet) plus the SEALED bit
+    private final AtomicInteger reserved = new AtomicInteger();
+    // the size when sealed (failed appends keep incrementing reserved)
+    private volatile int sealedSize;
+    // the latest chronological view of the buffer (see EventSnapshot)
+    private volatile EventSnapshot snapshot = EventSnapshot.EMPTY;
+
+    /**
+     * appends the event; safe to call from any number of threads concurrently
+     * @return {@code false} if the buffer is sealed (and the event was not added)
+     */
+    boolean tryAdd(LogEvent event) {
+        int index = reserved.getAndIncrement();
+        if ((index & SEALED) != 0) {
+            return false;
+        }
+        if (index >= MAX_SIZE) {
+            reserved.decrementAndGet();
+            throw new IllegalStateException("LogEventBuffer is full; call clearEventsAtLevel() or reset() on the TestLogger");
+        }
+        int pos = index + FIRST_BUCKET_SIZE;
+        int bucketIndex = bucketIndex(pos);
+        bucket(bucketIndex).set(pos - Integer.highestOneBit(pos), event);
+        return true;
+    }
+
+    /**
+     * fails all subsequent appends
+     * @return the final size
+     */
+    int seal() {
+        while (true) {
+            int current = reserved.get();
+            if ((current & SEALED) != 0) {
+                return sealedSize;
+            }
+            sealedSize = current; // written before the CAS so whoever sees SEALED sees the size
+            if (reserved.compareAndSet(current, current | SEALED)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * number of events appended so far (including any still being published by their appending thread)
+     */
+    int size() {
+        int current = reserved.get();
+        return (current & SEALED) == 0 ? current : sealedSize;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * returns the event at {@code index}; waits (briefly) if another thread has reserved that slot but not yet published it
+     */
+    LogEvent get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for size " + size());
+        }
+        int pos = index + FIRST_BUCKET_SIZE;
+        int bucketIndex = bucketIndex(pos);
+        int offset = pos - Integer.highestOneBit(pos);
+        int attempt = 0;
+        AtomicReferenceArray<LogEvent> bucket;
+        while ((bucket = buckets.get(bucketIndex)) == null) {
+            attempt = SpinWait.backoff(attempt);
+        }
+        LogEvent event;
+        while ((event = bucket.get(offset)) == null) {
+            attempt = SpinWait.backoff(attempt);
+        }
+        return event;
+    }
+
+    /**
+     * returns a copy of the events appended so far in the order they were appended
+     */
+    LogEvent[] toArray() {
+        int size = size();
+        LogEvent[] copy = new LogEvent[size];
+        for (int i = 0; i < size; ++i) {
+            copy[i] = get(i);
+        }
+        return copy;
+    }
+
+    EventSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * caches {@code latest} as the view to extend next unless a bigger one is cached (racing threads may still replace a bigger
+     * view with a smaller one; that only costs the next view a little more work)
+     */
+    void setSnapshot(EventSnapshot latest) {
+        if (latest.size() > snapshot.size()) {
+            snapshot = latest;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private AtomicReferenceArray<LogEvent> bucket(int bucketIndex) {
+        AtomicReferenceArray<LogEvent> bucket = buckets.get(bucketIndex);
+        if (bucket == null) {
+            // losing this race is harmless; the winner's bucket is used by everyone
+            buckets.compareAndSet(bucketIndex, null, new AtomicReferenceArray<>(FIRST_BUCKET_SIZE << bucketIndex));
+            bucket = buckets.get(bucketIndex);
+        }
+        return bucket;
+    }
+
+    private static int bucketIndex(int pos) {
+        return (Integer.SIZE - 1 - Integer.numberOfLeadingZeros(pos)) - FIRST_BUCKET_SHIFT;
+    }
+}
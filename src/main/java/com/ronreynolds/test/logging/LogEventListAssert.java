@@ -1,9 +1,14 @@
 package com.ronreynolds.test.logging;
 
+import org.assertj.core.api.AbstractDurationAssert;
+import org.assertj.core.api.Assertions;
 import org.assertj.core.api.FactoryBasedNavigableListAssert;
 import org.slf4j.event.Level;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
 
 /**
  * Assert-J style class for making assertions about {@code List<LogEvent>}
@@ -23,24 +28,214 @@ import java.util.List;
  */
 public class LogEventListAssert
         extends FactoryBasedNavigableListAssert<LogEventListAssert, List<? extends LogEvent>, LogEvent, LogEventAssert> {
-    private LogEventListAssert(List<LogEvent> actual) {
+    // number of earlier events evicted by the TestLogger's RetentionPolicy (i.e. actual is only the tail of what was logged)
+    private final long droppedEventCount;
+    // the logger and level actual came from (so the await methods can wait for more); null if unknown
+    private final TestLogger log;
+    private final Level level;
+
+    private LogEventListAssert(List<LogEvent> actual, long droppedEventCount, TestLogger log, Level level) {
         super(actual, LogEventListAssert.class, LogEventAssert::new);
+        this.droppedEventCount = droppedEventCount;
+        this.log = log;
+        this.level = level;
     }
 
     /**
      * create a {@code LogEventListAssert} for the provided {@code List<LogEvent>}.
      */
     public static LogEventListAssert assertThat(List<LogEvent> logEventList) {
-        return new LogEventListAssert(logEventList);
+        return new LogEventListAssert(logEventList, 0, null, null);
     }
 
     /**
      * create a {@code LogEventListAssert} for the {@code List<LogEvent>} of events at {@code level} in {@code log}
+     * (the logger's snapshot of them as they are now; with the unbounded retention policy a view of its storage, not a copy)
      * @param log the {@code TestLogger} from which we want the list of {@code LogEvent}s
      * @param level the level of the {@code LogEvent}s upon which we want to assert
      * @return new {@code LogEventListAssert} for the {@code LogEvent}s at the specified level in the provided {@code TestLogger}
      */
     public static LogEventListAssert assertThat(TestLogger log, Level level) {
-        return assertThat(log.getEventsAtLevel(level));
+        List<LogEvent> eventList = log.getEventsAtLevel(level);
+        long droppedEventCount = log.getDroppedEventCount(level);
+        LogEventListAssert listAssert = new LogEventListAssert(eventList, droppedEventCount, log, level);
+        if (droppedEventCount > 0) {
+            // so every failure message mentions that earlier events are missing
+            listAssert.as("%s events of %s (truncated tail; %d earlier events dropped by retention policy %s)",
+                          level, log.getName(), droppedEventCount, log.getRetentionPolicy());
+        }
+        return listAssert;
+    }
+
+    /**
+     * create a {@code LogEventListAssert} for the events matching {@code query}; failure messages describe the query
+     */
+    public static LogEventListAssert assertThat(EventQuery query) {
+        return new LogEventListAssert(query.list(), 0, null, null).as("%s", query);
+    }
+
+    /**
+     * assert that no events were evicted by the {@code TestLogger}'s {@code RetentionPolicy} so the list holds every event logged
+     */
+    public LogEventListAssert isNotTruncated() {
+        isNotNull();
+        if (droppedEventCount > 0) {
+            failWithMessage("Expecting all logged events but %d earlier events were dropped by the retention policy",
+                            droppedEventCount);
+        }
+        return myself;
+    }
+
+    /**
+     * assert that {@code template} (the message before args are substituted) is the message of exactly {@code times} of the
+     * events; a scan of the events (see {@link TestLogger#assertTemplateLoggedTimes(Level, String, long)} for a lookup in the
+     * {@link TemplateCatalog} that also counts events the retention policy dropped)
+     */
+    public LogEventListAssert templateLoggedTimes(String template, long times) {
+        isNotNull();
+        Objects.requireNonNull(template, "template can not be null");
+        long count = actual.stream().filter(event -> template.equals(event.getMessage())).count();
+        if (count != times) {
+            failWithMessage("Expecting template \"%s\" to be logged %d times but it was logged %d times", template, times, count);
+        }
+        return myself;
+    }
+
+    /**
+     * assert that {@code template} was never logged (see {@link #templateLoggedTimes(String, long)})
+     */
+    public LogEventListAssert templateNeverLogged(String template) {
+        return templateLoggedTimes(template, 0);
+    }
+
+    /**
+     * assert that the events were all logged within {@code maxSpan} of each other (measured with {@code System.nanoTime()})
+     */
+    public LogEventListAssert eventsWithin(Duration maxSpan) {
+        isNotNull();
+        Objects.requireNonNull(maxSpan, "maxSpan can not be null");
+        if (actual.size() < 2) {
+            return myself;
+        }
+        LogEvent first = actual.get(0);
+        LogEvent last = first;
+        for (LogEvent event : actual) {
+            first = event.getNanoTime() - first.getNanoTime() < 0 ? event : first;
+            last = event.getNanoTime() - last.getNanoTime() > 0 ? event : last;
+        }
+        Duration span = latency(first, last);
+        if (span.compareTo(maxSpan) > 0) {
+            failWithMessage("Expecting events to be logged within %s but they spanned %s%n  first: %s%n  last: %s",
+                            maxSpan, span, first, last);
+        }
+        return myself;
+    }
+
+    /**
+     * returns an assert on the time (measured with {@code System.nanoTime()}) from {@code from} to {@code to} being logged;
+     * negative if {@code to} was logged first
+     */
+    public AbstractDurationAssert<?> latencyBetween(LogEvent from, LogEvent to) {
+        isNotNull();
+        Objects.requireNonNull(from, "from can not be null");
+        Objects.requireNonNull(to, "to can not be null");
+        return Assertions.assertThat(latency(from, to)).as("latency from [%s] to [%s]", from, to);
+    }
+
+    /**
+     * returns an assert on the time from the first event matching {@code from} to the first event after it matching {@code to}
+     */
+    public AbstractDurationAssert<?> latencyBetween(Predicate<? super LogEvent> from, Predicate<? super LogEvent> to) {
+        isNotNull();
+        int fromIndex = indexOf(from, 0);
+        if (fromIndex < 0) {
+            failWithMessage("Expecting an event matching the 'from' predicate but there was none in %s", actual);
+        }
+        int toIndex = indexOf(to, fromIndex + 1);
+        if (toIndex < 0) {
+            failWithMessage("Expecting an event matching the 'to' predicate after %s but there was none", actual.get(fromIndex));
+        }
+        return latencyBetween(actual.get(fromIndex), actual.get(toIndex));
+    }
+
+    /**
+     * assert that the events (taken in order) contain {@code sequence}; matched in one pass and, on failure, describes the
+     * longest partial match (the events matched, the step it was waiting for, and what ended it)
+     */
+    public LogEventListAssert containsSequence(EventSequence sequence) {
+        isNotNull();
+        Objects.requireNonNull(sequence, "sequence can not be null");
+        EventSequence.Match match = sequence.match(actual);
+        if (!match.isComplete()) {
+            failWithMessage("Expecting events to contain %s but they didn't; %s", sequence, match.describeFailure());
+        }
+        return myself;
+    }
+
+    /**
+     * assert that the events (taken in order) don't contain {@code sequence}
+     */
+    public LogEventListAssert doesNotContainSequence(EventSequence sequence) {
+        isNotNull();
+        Objects.requireNonNull(sequence, "sequence can not be null");
+        EventSequence.Match match = sequence.match(actual);
+        if (match.isComplete()) {
+            failWithMessage("Expecting events not to contain %s but they did:%n  %s", sequence, match.getEvents());
+        }
+        return myself;
+    }
+
+    /**
+     * waits up to {@code timeout} for an event (at this assert's level) matching {@code predicate} to be captured then returns
+     * an assert on the events at that level as they are then; fails if none is captured in time. only waits for
+     * {@code assertThat(TestLogger, Level)} (a list can't grow so it's checked once).
+     */
+    public LogEventListAssert awaitEvent(Predicate<? super LogEvent> predicate, Duration timeout) {
+        isNotNull();
+        Objects.requireNonNull(predicate, "predicate can not be null");
+        if (log == null) {
+            if (indexOf(predicate, 0) < 0) {
+                failWithMessage("Expecting an event matching the predicate but there was none in %s", actual);
+            }
+            return myself;
+        }
+        if (log.awaitEvent(event -> event.getLevel() == level && predicate.test(event), timeout) == null) {
+            failWithMessage("Expecting a %s event of %s matching the predicate within %s but there was none in %s", level,
+                            log.getName(), timeout, log.getEventsAtLevel(level));
+        }
+        return assertThat(log, level);
+    }
+
+    /**
+     * waits up to {@code timeout} for at least {@code count} events at this assert's level to be captured then returns an
+     * assert on the events at that level as they are then; fails if they aren't in time. only waits for
+     * {@code assertThat(TestLogger, Level)} (a list can't grow so it's checked once).
+     */
+    public LogEventListAssert awaitCount(int count, Duration timeout) {
+        isNotNull();
+        if (log == null) {
+            if (actual.size() < count) {
+                failWithMessage("Expecting at least %d events but there were %d", count, actual.size());
+            }
+            return myself;
+        }
+        if (!log.awaitCount(level, count, timeout)) {
+            failWithMessage("Expecting at least %d %s events of %s within %s but there were %d", count, level, log.getName(),
+                            timeout, log.getEventsAtLevel(level).size());
+        }
+        return assertThat(log, level);
+    }
+
+    private int indexOf(Predicate<? super LogEvent> predicate, int fromIndex) {
+        for (int i = fromIndex; i < actual.size(); ++i) {
+            if (predicate.test(actual.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Duration latency(LogEvent from, LogEvent to) {
+        return Duration.ofNanos(to.getNanoTime() - from.getNanoTime());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package com.ronreynolds.test.logging;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.event.Level;
+
+/**
+ * lock-free bounded ring-buffer of {@code LogEvent}s preallocated to {@code capacity}; backs the bounded {@code RetentionPolicy}s.
+ * <p>
+ * every event gets a position ({@code tail.getAndIncrement()}) and lives in slot {@code position % capacity}. {@code head} is
+ * the oldest retained position; an add first advances {@code head} past anything that no longer fits (or is older than
+ * {@code maxAgeMillis}) and whichever thread wins the CAS that moves {@code head} past a position counts that event as dropped,
+ * so every eviction is O(1) and counted exactly once. a slot is never rewritten until {@code head} has passed its previous
+ * occupant so readers can validate what they read by re-checking the slot's position.
+ */
+final class LogEventRing {
+    // marks a slot whose event is being replaced
+    private static final long WRITING = -1;
+    private static final Level[] LEVELS = Level.values();
+
+    private final int capacity;
+    private final long maxAgeMillis;
+    private final AtomicReferenceArray<LogEvent> slots;
+    // position of the event in each slot (or WRITING)
+    private final AtomicLongArray positions;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    // events evicted by count or age (indexed by Level.ordinal())
+    private final AtomicLongArray dropped = new AtomicLongArray(LEVELS.length);
+    // positions below these were removed by clear(Level) (indexed by Level.ordinal())
+    private final AtomicLongArray clearedBelow = new AtomicLongArray(LEVELS.length);
+
+    /**
+     * @param capacity the maximum number of events retained
+     * @param maxAgeMillis events older than this are evicted; 0 means events are only evicted by count
+     */
+    LogEventRing(int capacity, long maxAgeMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.maxAgeMillis = maxAgeMillis;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.positions = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; ++i) {
+            positions.set(i, i - capacity); // "previous lap" so no slot looks published
+        }
+    }
+
+    void add(LogEvent event) {
+        long pos = tail.getAndIncrement();
+        if (maxAgeMillis > 0) {
+            expire(event.getTimeMillis() - maxAgeMillis, pos);
+        }
+        evictBelow(pos - capacity + 1);
+        int slot = slot(pos);
+        positions.set(slot, WRITING);
+        slots.set(slot, event);
+        positions.set(slot, pos);
+    }
+
+    /**
+     * returns the retained events in the order they were added
+     */
+    List<LogEvent> toList() {
+        return toList(null);
+    }
+
+    /**
+     * returns the retained events at {@code level} (or all levels if {@code null}) in chronological order
+     */
+    List<LogEvent> toList(Level level) {
+        expire();
+        long end = tail.get();
+        long start = Math.max(head.get(), end - capacity);
+        LogEvent[] events = new LogEvent[(int) Math.min(end - start, capacity)];
+        int size = 0;
+        for (long pos = start; pos < end; ++pos) {
+            LogEvent event = read(pos);
+            if (event != null && (level == null || event.getLevel() == level) && isVisible(event, pos)) {
+                events[size++] = event;
+            }
+        }
+        return EventOrder.toList(events, size);
+    }
+
+    /**
+     * the number of events in the ring (including any that are hidden by a clear or have expired)
+     */
+    int size() {
+        return (int) Math.min(tail.get() - head.get(), capacity);
+    }
+
+    /**
+     * hides the events at {@code level} added so far and resets its dropped-count
+     */
+    void clear(Level level) {
+        clearedBelow.accumulateAndGet(level.ordinal(), tail.get(), Math::max);
+        dropped.set(level.ordinal(), 0);
+    }
+
+    long getDroppedCount(Level level) {
+        expire();
+        return dropped.get(level.ordinal());
+    }
+
+    long getDroppedCount() {
+        expire();
+        long count = 0;
+        for (int i = 0; i < LEVELS.length; ++i) {
+            count += dropped.get(i);
+        }
+        return count;
+    }
+
+    private void expire() {
+        if (maxAgeMillis > 0) {
+            expire(System.currentTimeMillis() - maxAgeMillis, tail.get());
+        }
+    }
+
+    /**
+     * evicts events logged before {@code cutoffMillis} from the head of the ring (but never at or beyond {@code limit})
+     */
+    private void expire(long cutoffMillis, long limit) {
+        long h;
+        while ((h = head.get()) < limit) {
+            LogEvent oldest = awaitPublished(h);
+            if (oldest == null) {
+                continue;   // another thread evicted it
+            }
+            if (oldest.getTimeMillis() >= cutoffMillis) {
+                return;
+            }
+            if (head.compareAndSet(h, h + 1)) {
+                countDropped(oldest, h);
+            }
+        }
+    }
+
+    /**
+     * evicts events from the head of the ring until {@code head >= newHead}
+     */
+    private void evictBelow(long newHead) {
+        long h;
+        while ((h = head.get()) < newHead) {
+            LogEvent oldest = awaitPublished(h);
+            if (oldest != null && head.compareAndSet(h, h + 1)) {
+                countDropped(oldest, h);
+            }
+        }
+    }
+
+    private void countDropped(LogEvent event, long pos) {
+        if (isVisible(event, pos)) {
+            dropped.incrementAndGet(event.getLevel().ordinal());
+        }
+    }
+
+    private boolean isVisible(LogEvent event, long pos) {
+        return pos >= clearedBelow.get(event.getLevel().ordinal());
+    }
+
+    /**
+     * returns the event at {@code pos} once its adding thread has published it or {@code null} if another thread evicted it
+     * first (in which case the slot may already hold a newer event)
+     */
+    private LogEvent awaitPublished(long pos) {
+        int slot = slot(pos);
+        int attempt = 0;
+        while (positions.get(slot) != pos) {
+            if (head.get() > pos) {
+                return null;
+            }
+            attempt = SpinWait.backoff(attempt);
+        }
+        LogEvent event = slots.get(slot);
+        // same check as read(); the slot can be rewritten as soon as head passes pos
+        return positions.get(slot) == pos ? event : null;
+    }
+
+    /**
+     * returns the event at {@code pos} or {@code null} if it has already been overwritten
+     */
+    private LogEvent read(long pos) {
+        int slot = slot(pos);
+        int attempt = 0;
+        while (true) {
+            long slotPos = positions.get(slot);
+            if (slotPos == pos) {
+                LogEvent event = slots.get(slot);
+                // the slot is marked WRITING before its event is replaced so an unchanged position means an unchanged event
+                return positions.get(slot) == pos ? event : null;
+            }
+            if (slotPos > pos) {
+                return null;
+            }
+            // pos has been reserved but not yet published (or the slot is being overwritten); either finishes shortly
+            attempt = SpinWait.backoff(attempt);
+        }
+    }
+
+    private int slot(long pos) {
+        return (int) (pos % capacity);
+    }
+}
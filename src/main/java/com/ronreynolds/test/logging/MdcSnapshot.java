@@ -0,0 +1,111 @@
+package com.ronreynolds.test.logging;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.slf4j.MDC;
+import org.slf4j.spi.MDCAdapter;
+
+/**
+ * per-thread cache of the MDC as an immutable {@code Map} so that consecutive {@code LogEvent}s logged by a thread whose
+ * MDC hasn't changed share one snapshot instead of each calling {@code MDC.getCopyOfContextMap()}.
+ * <p>
+ * the {@code MDCAdapter} API has no change-counter so the cached snapshot is validated against the live MDC: the adapter's
+ * key-set size must match and every cached key must still map to the same value. this needs a {@code getKeys()} method that
+ * returns the live key-set (which {@code BasicMDCAdapter} and logback's {@code LogbackMDCAdapter} both have); adapters
+ * without one fall back to copying the MDC for every event, exactly as before.
+ */
+final class MdcSnapshot {
+    private static final ThreadLocal<MdcSnapshot> lastSnapshot = new ThreadLocal<>();
+    // the adapter whose getKeys() we resolved (MDC's adapter can be replaced, as TestLoggerTest does)
+    private static volatile AdapterKeys adapterKeys;
+
+    private final MDCAdapter adapter;
+    private final Map<String, String> contextMap;
+
+    private MdcSnapshot(MDCAdapter adapter, Map<String, String> contextMap) {
+        this.adapter = adapter;
+        this.contextMap = contextMap;
+    }
+
+    /**
+     * returns an immutable copy of the calling thread's MDC; never returns {@code null}
+     */
+    static Map<String, String> current() {
+        MDCAdapter adapter = MDC.getMDCAdapter();
+        if (adapter == null) {
+            return Map.of();
+        }
+        AdapterKeys keys = adapterKeys(adapter);
+        if (keys.getKeys == null) {
+            return copyOf(adapter);
+        }
+        Set<String> liveKeys = keys.getKeys(adapter);
+        MdcSnapshot last = lastSnapshot.get();
+        if (last != null && last.adapter == adapter && last.matches(adapter, liveKeys)) {
+            return last.contextMap;
+        }
+        Map<String, String> contextMap = liveKeys == null || liveKeys.isEmpty() ? Map.of() : copyOf(adapter);
+        lastSnapshot.set(new MdcSnapshot(adapter, contextMap));
+        return contextMap;
+    }
+
+    private boolean matches(MDCAdapter adapter, Set<String> liveKeys) {
+        int liveSize = liveKeys != null ? liveKeys.size() : 0;
+        if (liveSize != contextMap.size()) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : contextMap.entrySet()) {
+            if (!liveKeys.contains(entry.getKey()) || !Objects.equals(entry.getValue(), adapter.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, String> copyOf(MDCAdapter adapter) {
+        // some implementations return a null Map if there's no MDC data
+        Map<String, String> mdc = adapter.getCopyOfContextMap();
+        return mdc == null || mdc.isEmpty() ? Map.of() : Collections.unmodifiableMap(mdc);
+    }
+
+    private static AdapterKeys adapterKeys(MDCAdapter adapter) {
+        AdapterKeys keys = adapterKeys;
+        if (keys == null || keys.adapterClass != adapter.getClass()) {
+            keys = new AdapterKeys(adapter.getClass());
+            adapterKeys = keys;
+        }
+        return keys;
+    }
+
+    private static final class AdapterKeys {
+        private final Class<?> adapterClass;
+        private final MethodHandle getKeys;
+
+        AdapterKeys(Class<?> adapterClass) {
+            this.adapterClass = adapterClass;
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.publicLookup()
+                                      .findVirtual(adapterClass, "getKeys", MethodType.methodType(Set.class))
+                                      .asType(MethodType.methodType(Set.class, MDCAdapter.class));
+            } catch (ReflectiveOperationException | RuntimeException notSupported) {
+                handle = null;
+            }
+            this.getKeys = handle;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<String> getKeys(MDCAdapter adapter) {
+            try {
+                return (Set<String>) getKeys.invokeExact(adapter);
+            } catch (Throwable t) {
+                throw new IllegalStateException("unable to read MDC keys from " + adapterClass.getName(), t);
+            }
+        }
+    }
+}
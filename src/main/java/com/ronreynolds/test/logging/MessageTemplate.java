@@ -0,0 +1,140 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * a log-message template (e.g. {@code "user {} logged in from {}"}) parsed once into the positions of its {@code {}}
+ * placeholders so formatting doesn't re-scan the template; templates are cached and shared by every event that uses them.
+ * <p>
+ * {@link #format(Object[])} produces exactly what {@code MessageFormatter.arrayFormat(template, args).getMessage()} does:
+ * a trailing {@code Throwable} arg is not substituted, {@code \{}} is an escaped (literal) placeholder, {@code \\{}} is an
+ * escaped backslash followed by a placeholder, and escapes after the last substituted arg are left as-is.
+ */
+final class MessageTemplate {
+    private static final String DELIM = "{}";
+    // templates are normally string literals but a caller building messages dynamically shouldn't be able to fill the heap
+    private static final int MAX_CACHED_TEMPLATES = 10_000;
+    private static final Map<String, MessageTemplate> templateCache = new ConcurrentHashMap<>();
+
+    private static final byte PLACEHOLDER = 0;      // {}
+    private static final byte ESCAPED = 1;          // \{}
+    private static final byte DOUBLE_ESCAPED = 2;   // \\{}
+
+    private final String template;
+    // index of each {} in the template and what precedes it
+    private final int[] delimIndexes;
+    private final byte[] delimTypes;
+
+    private MessageTemplate(String template) {
+        this.template = template;
+        int count = 0;
+        int[] indexes = new int[4];
+        byte[] types = new byte[4];
+        for (int j = template.indexOf(DELIM); j >= 0; j = template.indexOf(DELIM, j + 2)) {
+            if (count == indexes.length) {
+                indexes = Arrays.copyOf(indexes, count * 2);
+                types = Arrays.copyOf(types, count * 2);
+            }
+            indexes[count] = j;
+            types[count] = j == 0 || template.charAt(j - 1) != '\\' ? PLACEHOLDER
+                    : j >= 2 && template.charAt(j - 2) == '\\' ? DOUBLE_ESCAPED : ESCAPED;
+            ++count;
+        }
+        this.delimIndexes = Arrays.copyOf(indexes, count);
+        this.delimTypes = Arrays.copyOf(types, count);
+    }
+
+    /**
+     * returns the (cached) parsed form of {@code template}
+     */
+    static MessageTemplate of(String template) {
+        MessageTemplate parsed = templateCache.get(template);
+        if (parsed == null) {
+            parsed = new MessageTemplate(template);
+            if (templateCache.size() < MAX_CACHED_TEMPLATES) {
+                MessageTemplate existing = templateCache.putIfAbsent(template, parsed);
+                if (existing != null) {
+                    parsed = existing;
+                }
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * formats {@code template} with {@code args}; a {@code null} template formats to {@code null}
+     */
+    static String format(String template, Object[] args) {
+        return template != null ? of(template).format(args) : null;
+    }
+
+    String format(Object[] args) {
+        if (args == null) {
+            return template;
+        }
+        // like MessageFormatter.arrayFormat(String, Object[]) a trailing Throwable is the event's thrown, not an arg
+        int argCount = args.length > 0 && args[args.length - 1] instanceof Throwable ? args.length - 1 : args.length;
+        if (argCount == 0 || delimIndexes.length == 0) {
+            return template;
+        }
+        StringBuilder buf = new StringBuilder(template.length() + 50);
+        int i = 0;      // start of the template text not yet appended
+        int delim = 0;  // next {} in the template
+        for (int arg = 0; arg < argCount; ) {
+            if (delim == delimIndexes.length) {
+                break;  // more args than placeholders
+            }
+            int j = delimIndexes[delim];
+            switch (delimTypes[delim++]) {
+                case ESCAPED:
+                    // the \ is dropped and {} is literal; no arg consumed
+                    buf.append(template, i, j - 1).append('{');
+                    i = j + 1;
+                    break;
+                case DOUBLE_ESCAPED:
+                    // the \\ becomes \ and {} is replaced
+                    buf.append(template, i, j - 1);
+                    appendArg(buf, args[arg++]);
+                    i = j + 2;
+                    break;
+                default:
+                    buf.append(template, i, j);
+                    appendArg(buf, args[arg++]);
+                    i = j + 2;
+            }
+        }
+        return buf.append(template, i, template.length()).toString();
+    }
+
+    /**
+     * returns {@code arg} rendered exactly as {@link #format} substitutes it
+     */
+    static String formatArg(Object arg) {
+        StringBuilder buf = new StringBuilder();
+        appendArg(buf, arg);
+        return buf.toString();
+    }
+
+    private static void appendArg(StringBuilder buf, Object arg) {
+        if (arg == null) {
+            buf.append("null");
+        } else if (isPlainValue(arg.getClass())) {
+            buf.append(arg);
+        } else {
+            // arrays (deep, with cycle detection) and toString() failures are rendered by slf4j itself so output is identical
+            buf.append(MessageFormatter.arrayFormat(DELIM, new Object[]{arg}, null).getMessage());
+        }
+    }
+
+    /**
+     * final JDK classes whose {@code toString()} can't throw (so slf4j's failure handling never applies)
+     */
+    private static boolean isPlainValue(Class<?> argClass) {
+        return argClass == String.class || argClass == Integer.class || argClass == Long.class || argClass == Boolean.class
+                || argClass == Double.class || argClass == Float.class || argClass == Short.class || argClass == Byte.class
+                || argClass == Character.class;
+    }
+}
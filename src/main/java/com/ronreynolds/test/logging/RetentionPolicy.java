@@ -0,0 +1,211 @@
+package com.ronreynolds.test.logging;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * controls how many {@code LogEvent}s a {@code TestLogger} keeps; the default ({@link #unbounded()}) keeps every event forever
+ * which is what most unit-tests want but will eventually run a long soak-test out of memory.
+ * <p>
+ * the bounded policies are backed by a ring-buffer preallocated to the policy's capacity; the oldest events are evicted in O(1)
+ * and counted so {@link TestLogger#getDroppedEventCount(org.slf4j.event.Level)} and {@code LogEventListAssert} can report that
+ * the events being asserted upon are only the tail of what was logged.
+ * <p>
+ * {@link #spillToDisk(int)} keeps every event like {@code unbounded()} but bounds how many are on the heap; older events are
+ * written to memory-mapped files and read back (transparently) when the events are asked for. {@link #compact()} keeps every
+ * event in primitive columns and materializes {@code LogEvent}s only when they're read.
+ */
+public final class RetentionPolicy {
+    private static final RetentionPolicy UNBOUNDED = new RetentionPolicy(0, false, null, 0, null, false);
+    private static final RetentionPolicy COMPACT = new RetentionPolicy(0, false, null, 0, null, true);
+
+    private final int maxEvents;
+    private final boolean perLevel;
+    private final Duration maxAge;
+    private final int maxHeapEvents;
+    private final Path spillDirectory;
+    private final boolean compact;
+
+    private RetentionPolicy(int maxEvents, boolean perLevel, Duration maxAge, int maxHeapEvents, Path spillDirectory,
+                            boolean compact) {
+        this.maxEvents = maxEvents;
+        this.perLevel = perLevel;
+        this.maxAge = maxAge;
+        this.maxHeapEvents = maxHeapEvents;
+        this.spillDirectory = spillDirectory;
+        this.compact = compact;
+    }
+
+    /**
+     * keep every event (the default)
+     */
+    public static RetentionPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * keep every event (as {@code unbounded()} does) in a compact column-per-field table instead of as {@code LogEvent} objects;
+     * uses a fraction of the memory per event at the cost of materializing a {@code LogEvent} each time one is read
+     */
+    public static RetentionPolicy compact() {
+        return COMPACT;
+    }
+
+    /**
+     * keep the most recent {@code maxEvents} events logged to the {@code TestLogger} regardless of level
+     */
+    public static RetentionPolicy lastEvents(int maxEvents) {
+        return new RetentionPolicy(requirePositive(maxEvents), false, null, 0, null, false);
+    }
+
+    /**
+     * keep the most recent {@code maxEvents} events of each level logged to the {@code TestLogger}
+     */
+    public static RetentionPolicy lastEventsPerLevel(int maxEvents) {
+        return new RetentionPolicy(requirePositive(maxEvents), true, null, 0, null, false);
+    }
+
+    /**
+     * keep the events logged to the {@code TestLogger} within the last {@code maxAge} (but never more than {@code maxEvents})
+     */
+    public static RetentionPolicy within(Duration maxAge, int maxEvents) {
+        Objects.requireNonNull(maxAge, "maxAge must not be null");
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            throw new IllegalArgumentException("maxAge must be positive: " + maxAge);
+        }
+        return new RetentionPolicy(requirePositive(maxEvents), false, maxAge, 0, null, false);
+    }
+
+    /**
+     * keep every event but at most {@code maxHeapEvents} on the heap; older events are written to memory-mapped segment files in
+     * the directory named by the {@code TestLogger.spillDir} system property (default {@code build/test-logger})
+     */
+    public static RetentionPolicy spillToDisk(int maxHeapEvents) {
+        return spillToDisk(maxHeapEvents, Path.of(System.getProperty("TestLogger.spillDir", "build/test-logger")));
+    }
+
+    /**
+     * keep every event but at most {@code maxHeapEvents} on the heap; older events are written to memory-mapped segment files in
+     * {@code spillDirectory} (created if necessary; the files are deleted when the events are reset or the JVM exits)
+     */
+    public static RetentionPolicy spillToDisk(int maxHeapEvents, Path spillDirectory) {
+        Objects.requireNonNull(spillDirectory, "spillDirectory must not be null");
+        if (maxHeapEvents <= 0) {
+            throw new IllegalArgumentException("maxHeapEvents must be positive: " + maxHeapEvents);
+        }
+        return new RetentionPolicy(0, false, null, maxHeapEvents, spillDirectory, false);
+    }
+
+    public boolean isBounded() {
+        return maxEvents > 0;
+    }
+
+    /**
+     * the capacity of the ring-buffer(s) backing this policy; 0 if unbounded
+     */
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    public boolean isPerLevel() {
+        return perLevel;
+    }
+
+    /**
+     * the age after which events are evicted; {@code null} if events are only evicted by count
+     */
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * whether events are stored column-wise (see {@link #compact()})
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * whether events beyond {@link #getMaxHeapEvents()} are written to disk
+     */
+    public boolean isSpilling() {
+        return maxHeapEvents > 0;
+    }
+
+    /**
+     * the number of events kept on the heap before they're written to disk; 0 if this policy doesn't spill
+     */
+    public int getMaxHeapEvents() {
+        return maxHeapEvents;
+    }
+
+    /**
+     * the directory spilled events are written to; {@code null} if this policy doesn't spill
+     */
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * creates the (empty) storage that implements this policy
+     */
+    EventStore newEventStore() {
+        if (isSpilling()) {
+            return new SpillingEventStore(this);
+        }
+        if (compact) {
+            return new ColumnarEventStore(this);
+        }
+        if (!isBounded()) {
+            return new ChronologicalEventStore(this);
+        }
+        if (perLevel) {
+            return new LevelEventStore(this, () -> new LogEventRing(maxEvents, 0));
+        }
+        return new RingEventStore(this, maxEvents, maxAge != null ? maxAge.toMillis() : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RetentionPolicy)) {
+            return false;
+        }
+        RetentionPolicy that = (RetentionPolicy) o;
+        return maxEvents == that.maxEvents && perLevel == that.perLevel && Objects.equals(maxAge, that.maxAge)
+               && maxHeapEvents == that.maxHeapEvents && Objects.equals(spillDirectory, that.spillDirectory)
+               && compact == that.compact;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxEvents, perLevel, maxAge, maxHeapEvents, spillDirectory, compact);
+    }
+
+    @Override
+    public String toString() {
+        if (isSpilling()) {
+            return String.format("spillToDisk(%d, %s)", maxHeapEvents, spillDirectory);
+        }
+        if (compact) {
+            return "compact";
+        }
+        if (!isBounded()) {
+            return "unbounded";
+        }
+        if (maxAge != null) {
+            return String.format("within(%s, %d)", maxAge, maxEvents);
+        }
+        return String.format(perLevel ? "lastEventsPerLevel(%d)" : "lastEvents(%d)", maxEvents);
+    }
+
+    private static int requirePositive(int maxEvents) {
+        if (maxEvents <= 0) {
+            throw new IllegalArgumentException("maxEvents must be positive: " + maxEvents);
+        }
+        return maxEvents;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ronreynolds.test.logging;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.event.Level;
+
+/**
+ * an {@code EventStore} that keeps the events of all levels in one {@code LogEventRing}; used for the policies that bound
+ * the logger as a whole ({@code lastEvents} and {@code within})
+ */
+final class RingEventStore implements EventStore {
+    private final RetentionPolicy retentionPolicy;
+    private final LogEventRing ring;
+
+    RingEventStore(RetentionPolicy retentionPolicy, int capacity, long maxAgeMillis) {
+        this.retentionPolicy = retentionPolicy;
+        this.ring = new LogEventRing(capacity, maxAgeMillis);
+    }
+
+    @Override
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    @Override
+    public void add(LogEvent event) {
+        ring.add(event);
+    }
+
+    @Override
+    public List<LogEvent> getEventsAtLevel(Level level) {
+        return ring.toList(Objects.requireNonNull(level, "null level not allowed"));
+    }
+
+    @Override
+    public List<LogEvent> getAllEvents() {
+        return ring.toList(null);   // the ring is already in chronological order
+    }
+
+    @Override
+    public Map<Level, List<LogEvent>> getLogEventMap() {
+        Map<Level, List<LogEvent>> copy = new EnumMap<>(Level.class);
+        for (Level level : Level.values()) {
+            List<LogEvent> eventList = ring.toList(level);
+            if (!eventList.isEmpty()) {
+                copy.put(level, eventList);
+            }
+        }
+        return Map.copyOf(copy);
+    }
+
+    @Override
+    public void clearEventsAtLevel(Level level) {
+        ring.clear(Objects.requireNonNull(level, "null level not allowed"));
+    }
+
+    @Override
+    public void reset() {
+        for (Level level : Level.values()) {
+            ring.clear(level);
+        }
+    }
+
+    @Override
+    public long getDroppedCount(Level level) {
+        return ring.getDroppedCount(level);
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return ring.getDroppedCount();
+    }
+
+    @Override
+    public int getEventCount() {
+        return ring.size();
+    }
+}
@@ -0,0 +1,512 @@
+package com.ronreynolds.test.logging;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.event.Level;
+
+/**
+ * an {@code EventStore} that keeps every event but only the most recent on the heap; used for
+ * {@link RetentionPolicy#spillToDisk(int)}.
+ * <p>
+ * events are appended (lock-free) to a {@code LogEventBuffer}; once it holds the policy's {@code maxHeapEvents} the thread that
+ * filled it seals it and installs an empty buffer (so other appenders only wait for the swap, as they do for a compaction in
+ * {@code ChronologicalEventStore}) and hands the sealed buffer to a background (daemon) thread which encodes its events (in
+ * chronological order) into memory-mapped {@link EventSegment}s, so no logging thread sorts, encodes, or creates files. the
+ * segments and buffers are published together as one immutable snapshot so readers never lock; events being spilled are read
+ * from the sealed buffer until their records are published. one buffer is spilled at a time per store: events logged faster
+ * than they can be spilled wait on the heap for the next spill.
+ * <p>
+ * each spill also keeps its records' headers (location, level, {@code nanoTime} and sequence number; about
+ * {@value #SPILLED_HEADER_BYTES} bytes an event) on the heap as a chronologically ordered run, merging the few events that
+ * raced the previous spill into the end of the runs before it, so the runs are in order end to end and reading never decodes
+ * or sorts spilled records just to find and order them.
+ * <p>
+ * the lists returned are views of a snapshot: spilled events are decoded from the mapped segments when they're accessed so
+ * asserting on a long run's events never needs them all on the heap at once. they stay readable after a clear or reset (see
+ * {@code EventSegment.delete()}).
+ */
+final class SpillingEventStore implements EventStore {
+    private static final Level[] LEVELS = Level.values();
+    // segment files are sparse so only the bytes written take up disk
+    private static final int SEGMENT_SIZE = 16 << 20;
+    // a spilled event's location, nanoTime, sequence and level in its SpilledRun
+    private static final int SPILLED_HEADER_BYTES = 3 * Long.BYTES + 1;
+    // encodes every store's sealed buffers off the logging threads
+    private static final ExecutorService spiller = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "TestLogger-spiller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RetentionPolicy retentionPolicy;
+    private final int maxHeapEvents;
+    private final Path spillDirectory;
+    private volatile Snapshot snapshot = new Snapshot(new EventSegment[0], new SpilledRun[0], null, new LogEventBuffer());
+    // events with nanoTimes at or below these were removed by clearEventsAtLevel() or reset() (indexed by Level.ordinal())
+    private final AtomicLongArray clearedThrough = EventOrder.newWatermarks(LEVELS.length);
+    // serializes spilling and clearing (appending never takes it)
+    private final ReentrantLock spillLock = new ReentrantLock();
+    // only used while holding spillLock
+    private final EventCodec codec = new EventCodec();
+    // the latest spill handed to the spiller (for awaitSpill())
+    private volatile Future<?> pendingSpill = CompletableFuture.completedFuture(null);
+    // why the last spill failed (its sealed buffer stays on the heap); rethrown by the add() that retries it
+    private volatile RuntimeException spillFailure;
+
+    SpillingEventStore(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+        this.maxHeapEvents = retentionPolicy.getMaxHeapEvents();
+        this.spillDirectory = retentionPolicy.getSpillDirectory();
+    }
+
+    @Override
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    @Override
+    public void add(LogEvent event) {
+        int attempt = 0;
+        Snapshot current;
+        while (!(current = snapshot).heapEvents.tryAdd(event)) {
+            attempt = SpinWait.backoff(attempt);    // the heap events are being swapped out or compacted
+        }
+        if (current.heapEvents.size() >= maxHeapEvents && (current.spilling == null || spillFailure != null)
+            && spillLock.tryLock()) {
+            // if the lock is busy (or a spill is in progress) the next add() (or the spiller) spills
+            RuntimeException failure;
+            try {
+                if (snapshot != current) {
+                    return;
+                }
+                failure = spillFailure;
+                spillFailure = null;
+                startSpill(current);
+            } finally {
+                spillLock.unlock();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * waits until the spills handed to the spiller so far (and any they started) have finished
+     */
+    void awaitSpill() {
+        Future<?> spill;
+        do {
+            spill = pendingSpill;
+            try {
+                spill.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("spilling failed", e.getCause());
+            }
+        } while (spill != pendingSpill);
+    }
+
+    @Override
+    public List<LogEvent> getEventsAtLevel(Level level) {
+        return events(snapshot, watermarks(), Objects.requireNonNull(level, "null level not allowed"));
+    }
+
+    @Override
+    public List<LogEvent> getAllEvents() {
+        return events(snapshot, watermarks(), null);
+    }
+
+    @Override
+    public Map<Level, List<LogEvent>> getLogEventMap() {
+        Snapshot current = snapshot;
+        long[] watermarks = watermarks();
+        Map<Level, List<LogEvent>> copy = new EnumMap<>(Level.class);
+        for (Level level : LEVELS) {
+            List<LogEvent> events = events(current, watermarks, level);
+            if (!events.isEmpty()) {
+                copy.put(level, events);
+            }
+        }
+        return Map.copyOf(copy);
+    }
+
+    @Override
+    public void clearEventsAtLevel(Level level) {
+        int ordinal = Objects.requireNonNull(level, "null level not allowed").ordinal();
+        SpinWait.lock(spillLock);
+        try {
+            // spilled events are hidden by the watermark; the heap events are compacted as in ChronologicalEventStore
+            Snapshot current = snapshot;
+            current.heapEvents.seal();
+            clearedThrough.accumulateAndGet(ordinal, EventOrder.watermark(), Math::max);
+            long[] watermarks = watermarks();
+            LogEventBuffer compacted = new LogEventBuffer();
+            for (LogEvent event : current.heapEvents.toArray()) {
+                if (isVisible(event.getNanoTime(), event.getLevel(), watermarks)) {
+                    compacted.tryAdd(event);
+                }
+            }
+            snapshot = new Snapshot(current.segments, current.runs, current.spilling, compacted);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    @Override
+    public void reset() {
+        reset(EventOrder.watermark());
+    }
+
+    @Override
+    public void reset(long watermark) {
+        SpinWait.lock(spillLock);
+        try {
+            Snapshot current = snapshot;
+            current.heapEvents.seal();
+            for (int ordinal = 0; ordinal < LEVELS.length; ++ordinal) {
+                clearedThrough.accumulateAndGet(ordinal, watermark, Math::max);
+            }
+            snapshot = new Snapshot(new EventSegment[0], new SpilledRun[0], null, new LogEventBuffer());
+            spillFailure = null;
+            // lists returned earlier keep the mappings alive (see EventSegment.delete())
+            Arrays.stream(current.segments).forEach(EventSegment::delete);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * nothing is ever dropped (spilled events are still retained)
+     */
+    @Override
+    public long getDroppedCount(Level level) {
+        return 0;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return 0;
+    }
+
+    @Override
+    public int getEventCount() {
+        Snapshot current = snapshot;
+        int spilledCount = Arrays.stream(current.runs).mapToInt(SpilledRun::size).sum();
+        return spilledCount + (current.spilling == null ? 0 : current.spilling.size()) + current.heapEvents.size();
+    }
+
+    /**
+     * the events not yet spilled plus the headers of those that have been
+     */
+    @Override
+    public long getRetainedBytesEstimate() {
+        Snapshot current = snapshot;
+        long spilledCount = Arrays.stream(current.runs).mapToLong(SpilledRun::size).sum();
+        int heapCount = (current.spilling == null ? 0 : current.spilling.size()) + current.heapEvents.size();
+        return (long) heapCount * EVENT_BYTES_ESTIMATE + spilledCount * SPILLED_HEADER_BYTES;
+    }
+
+    /**
+     * seals the (full) heap events of {@code current}, installs an empty buffer for appenders to carry on with, and hands the
+     * sealed events to the spiller (or hands it the sealed events a failed spill left on the heap again); spillLock must be
+     * held
+     */
+    private void startSpill(Snapshot current) {
+        if (current.spilling == null) {
+            current.heapEvents.seal();
+            snapshot = new Snapshot(current.segments, current.runs, current.heapEvents, new LogEventBuffer());
+        }
+        pendingSpill = spiller.submit(this::spill);
+    }
+
+    /**
+     * (on the spiller) encodes the sealed events into the segments then starts the next spill if the heap filled up again
+     * meanwhile; if encoding fails the sealed events stay on the heap (and any records partially appended are discarded) to be
+     * retried by the next add() that finds the heap full, which rethrows the failure
+     */
+    private void spill() {
+        SpinWait.lock(spillLock);
+        try {
+            // nothing else replaces the snapshot while spillLock is held; appenders only add to its heap events
+            Snapshot current = snapshot;
+            if (current.spilling == null) {
+                return;     // reset() discarded the sealed events
+            }
+            try {
+                snapshot = current = encode(current);
+            } catch (RuntimeException e) {
+                spillFailure = e;
+                return;
+            }
+            if (current.heapEvents.size() >= maxHeapEvents) {
+                startSpill(current);
+            }
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * returns {@code current} with its sealed events encoded into the segments and their headers appended to the runs
+     */
+    private Snapshot encode(Snapshot current) {
+        LogEvent[] events = current.spilling.toArray();
+        EventOrder.restore(events, events.length);
+        long[] watermarks = watermarks();
+        EventSegment[] segments = current.segments;
+        int lastRecordCount = segments.length == 0 ? 0 : segments[segments.length - 1].getRecordCount();
+        SpilledRun run = new SpilledRun(events.length);
+        boolean spilled = false;
+        try {
+            for (LogEvent event : events) {
+                if (!isVisible(event.getNanoTime(), event.getLevel(), watermarks)) {
+                    continue;   // cleared while on the heap
+                }
+                ByteBuffer record = codec.encode(event);
+                if (segments.length == 0 || !segments[segments.length - 1].tryAppend(record)) {
+                    EventSegment segment = EventSegment.create(spillDirectory, Math.max(SEGMENT_SIZE, record.remaining()));
+                    segment.tryAppend(record);
+                    segments = Arrays.copyOf(segments, segments.length + 1);
+                    segments[segments.length - 1] = segment;
+                }
+                EventSegment segment = segments[segments.length - 1];
+                long location = (long) (segments.length - 1) << 32 | segment.offset(segment.getRecordCount() - 1);
+                run.append(location, event);
+            }
+            spilled = true;
+            return new Snapshot(segments, SpilledRun.append(current.runs, run), null, current.heapEvents);
+        } finally {
+            if (!spilled) {
+                if (current.segments.length > 0) {
+                    current.segments[current.segments.length - 1].truncate(lastRecordCount);
+                }
+                for (int i = current.segments.length; i < segments.length; ++i) {
+                    segments[i].delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * returns the visible events of {@code snapshot} (at {@code level} if not {@code null}) in chronological order
+     */
+    private static List<LogEvent> events(Snapshot snapshot, long[] watermarks, Level level) {
+        LogEvent[] unspilled = snapshot.heapEvents.toArray();
+        if (snapshot.spilling != null) {
+            LogEvent[] spilling = snapshot.spilling.toArray();
+            LogEvent[] combined = Arrays.copyOf(spilling, spilling.length + unspilled.length);
+            System.arraycopy(unspilled, 0, combined, spilling.length, unspilled.length);
+            unspilled = combined;
+        }
+        int heapCount = 0;
+        for (LogEvent event : unspilled) {
+            if ((level == null || event.getLevel() == level) && isVisible(event.getNanoTime(), event.getLevel(), watermarks)) {
+                unspilled[heapCount++] = event;
+            }
+        }
+        EventOrder.restore(unspilled, heapCount);
+        if (snapshot.runs.length == 0) {
+            return EventOrder.toList(unspilled, heapCount);
+        }
+        // merges the (ordered) runs with the heap events: each spilled record as its location, heap events as ~index
+        long[] entries = new long[Arrays.stream(snapshot.runs).mapToInt(SpilledRun::size).sum() + heapCount];
+        int entryCount = 0;
+        int heapIndex = 0;
+        for (SpilledRun run : snapshot.runs) {
+            for (int i = run.from; i < run.to; ++i) {
+                Level recordLevel = LEVELS[run.levels[i]];
+                if ((level != null && recordLevel != level) || !isVisible(run.nanoTimes[i], recordLevel, watermarks)) {
+                    continue;
+                }
+                while (heapIndex < heapCount && EventOrder.compare(unspilled[heapIndex].getNanoTime(),
+                        unspilled[heapIndex].getSequence(), run.nanoTimes[i], run.sequences[i]) < 0) {
+                    entries[entryCount++] = ~heapIndex++;
+                }
+                entries[entryCount++] = run.locations[i];
+            }
+        }
+        while (heapIndex < heapCount) {
+            entries[entryCount++] = ~heapIndex++;
+        }
+        return new SpilledEventList(snapshot.segments, Arrays.copyOf(entries, entryCount), unspilled);
+    }
+
+    private static boolean isVisible(long nanoTime, Level level, long[] watermarks) {
+        return nanoTime > watermarks[level.ordinal()];
+    }
+
+    private long[] watermarks() {
+        long[] watermarks = new long[LEVELS.length];
+        for (int ordinal = 0; ordinal < LEVELS.length; ++ordinal) {
+            watermarks[ordinal] = clearedThrough.get(ordinal);
+        }
+        return watermarks;
+    }
+
+    /**
+     * the segments and the ordered runs of their records' headers (readers only see the records in a run) plus the events not
+     * yet spilled: the sealed buffer being spilled (if any) and the buffer being appended to
+     */
+    private static final class Snapshot {
+        private final EventSegment[] segments;
+        private final SpilledRun[] runs;
+        private final LogEventBuffer spilling;
+        private final LogEventBuffer heapEvents;
+
+        Snapshot(EventSegment[] segments, SpilledRun[] runs, LogEventBuffer spilling, LogEventBuffer heapEvents) {
+            this.segments = segments;
+            this.runs = runs;
+            this.spilling = spilling;
+            this.heapEvents = heapEvents;
+        }
+    }
+
+    /**
+     * the headers of spilled records {@code from} (inclusive) to {@code to} (exclusive) of its arrays in chronological order;
+     * immutable once appended to a snapshot (runs split from it share its arrays)
+     */
+    private static final class SpilledRun {
+        private final long[] locations;
+        private final long[] nanoTimes;
+        private final long[] sequences;
+        private final byte[] levels;
+        private final int from;
+        private int to;
+
+        SpilledRun(int capacity) {
+            this(new long[capacity], new long[capacity], new long[capacity], new byte[capacity], 0, 0);
+        }
+
+        private SpilledRun(long[] locations, long[] nanoTimes, long[] sequences, byte[] levels, int from, int to) {
+            this.locations = locations;
+            this.nanoTimes = nanoTimes;
+            this.sequences = sequences;
+            this.levels = levels;
+            this.from = from;
+            this.to = to;
+        }
+
+        int size() {
+            return to - from;
+        }
+
+        void append(long location, LogEvent event) {
+            append(location, event.getNanoTime(), event.getSequence(), (byte) event.getLevel().ordinal());
+        }
+
+        private void append(long location, long nanoTime, long sequence, byte level) {
+            locations[to] = location;
+            nanoTimes[to] = nanoTime;
+            sequences[to] = sequence;
+            levels[to] = level;
+            ++to;
+        }
+
+        private void appendFrom(SpilledRun that, int index) {
+            append(that.locations[index], that.nanoTimes[index], that.sequences[index], that.levels[index]);
+        }
+
+        private int compare(int index, SpilledRun that, int thatIndex) {
+            return EventOrder.compare(nanoTimes[index], sequences[index], that.nanoTimes[thatIndex], that.sequences[thatIndex]);
+        }
+
+        /**
+         * returns {@code runs} followed by {@code run}, merging the ends of the runs that {@code run} overlaps (the events that
+         * raced the previous spills) into it so the runs stay in order end to end
+         */
+        static SpilledRun[] append(SpilledRun[] runs, SpilledRun run) {
+            if (run.size() == 0) {
+                return runs;
+            }
+            int kept = runs.length;
+            SpilledRun head = null;
+            while (kept > 0 && runs[kept - 1].compare(runs[kept - 1].to - 1, run, run.from) > 0) {
+                SpilledRun previous = runs[--kept];
+                // the first of previous's events after run's first (binary search; previous is in order)
+                int low = previous.from;
+                int high = previous.to - 1;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (previous.compare(middle, run, run.from) > 0) {
+                        high = middle;
+                    } else {
+                        low = middle + 1;
+                    }
+                }
+                run = merge(previous, low, run);
+                if (low > previous.from) {
+                    head = new SpilledRun(previous.locations, previous.nanoTimes, previous.sequences, previous.levels,
+                            previous.from, low);
+                    break;
+                }
+            }
+            SpilledRun[] appended = Arrays.copyOf(runs, kept + (head == null ? 1 : 2));
+            if (head != null) {
+                appended[kept++] = head;
+            }
+            appended[kept] = run;
+            return appended;
+        }
+
+        /**
+         * merges {@code previous}'s headers from {@code start} with all of {@code run}'s into a new run
+         */
+        private static SpilledRun merge(SpilledRun previous, int start, SpilledRun run) {
+            SpilledRun merged = new SpilledRun(previous.to - start + run.size());
+            int p = start;
+            int r = run.from;
+            while (p < previous.to || r < run.to) {
+                if (r == run.to || (p < previous.to && previous.compare(p, run, r) <= 0)) {
+                    merged.appendFrom(previous, p++);
+                } else {
+                    merged.appendFrom(run, r++);
+                }
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * an immutable list of spilled records (decoded each time they're accessed) and events still on the heap
+     */
+    private static final class SpilledEventList extends AbstractList<LogEvent> implements RandomAccess {
+        private final EventSegment[] segments;
+        private final long[] entries;
+        private final LogEvent[] heapEvents;
+
+        SpilledEventList(EventSegment[] segments, long[] entries, LogEvent[] heapEvents) {
+            this.segments = segments;
+            this.entries = entries;
+            this.heapEvents = heapEvents;
+        }
+
+        @Override
+        public LogEvent get(int index) {
+            long entry = entries[index];
+            return entry >= 0 ? EventCodec.decode(segments[(int) (entry >>> 32)].records(), (int) entry)
+                              : heapEvents[(int) ~entry];
+        }
+
+        @Override
+        public int size() {
+            return entries.length;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ronreynolds.test.logging;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * backoff for the lock-free buffers' short waits on another thread (e.g. one that has reserved a slot but not yet published
+ * its event); spinning alone can starve that thread when there are more runnable threads than cores.
+ * <p>
+ * also counts those waits (and waits for the stores' locks) for {@code CaptureMetrics}; only waiting pays for the count.
+ */
+final class SpinWait {
+    private static final int SPIN_LIMIT = 100;
+    private static final int YIELD_LIMIT = 1_000;
+    private static final long PARK_NANOS = 10_000;
+    private static final LongAdder backoffCount = new LongAdder();
+    private static final LongAdder lockWaitCount = new LongAdder();
+
+    private SpinWait() {
+    }
+
+    /**
+     * waits a little longer each time it's called for the same wait; returns the next {@code attempt}
+     */
+    static int backoff(int attempt) {
+        backoffCount.increment();
+        return pause(attempt);
+    }
+
+    /**
+     * as {@link #backoff(int)} but not counted: for waits that aren't on another thread (e.g. for the clock to tick in
+     * {@code EventOrder.watermark()}) so they don't show up as contention in {@code CaptureMetrics}
+     */
+    static int pause(int attempt) {
+        if (attempt < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else if (attempt < YIELD_LIMIT) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return attempt + 1;
+    }
+
+    /**
+     * acquires {@code lock}, counting the acquisition if it had to wait
+     */
+    static void lock(ReentrantLock lock) {
+        if (!lock.tryLock()) {
+            lockWaitCount.increment();
+            lock.lock();
+        }
+    }
+
+    /**
+     * the number of times a thread backed off waiting on another (e.g. a retried append or a wait for a slot to be published)
+     */
+    static long getBackoffCount() {
+        return backoffCount.sum();
+    }
+
+    /**
+     * the number of times a thread had to wait for a store's lock
+     */
+    static long getLockWaitCount() {
+        return lockWaitCount.sum();
+    }
+
+    static void resetCounts() {
+        backoffCount.reset();
+        lockWaitCount.reset();
+    }
+}
@@ -0,0 +1,137 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import org.slf4j.event.Level;
+
+/**
+ * global catalog of the message templates captured by every {@code TestLogger} with a {@link TemplateStats} (counts and
+ * first/last times by logger and level) for each; updated as events are captured so "how many times was this template logged"
+ * is a lookup instead of a scan of the events (see {@code TestLogger.assertTemplateLoggedTimes()}).
+ * <p>
+ * a logger's counts are zeroed when its events are cleared or reset (visiting only the templates that logger has logged).
+ * events captured while a {@code CaptureScope} is current aren't cataloged (the catalog is shared by every test). at most
+ * {@value #MAX_TEMPLATES} templates are cataloged so a caller building messages dynamically can't fill the heap; see
+ * {@link #isFull()}.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ runLoadTest();
+ System.out.println(TemplateCatalog.report(10));    // the 10 noisiest templates
+ assertThat(TemplateCatalog.get("retrying {} after {}").getCount(Level.WARN)).isLessThan(100);
+ </pre>
+ @formatter:on
+ */
+public final class TemplateCatalog {
+    static final int MAX_TEMPLATES = 10_000;
+    private static final Map<String, TemplateStats> statsByTemplate = new ConcurrentHashMap<>();
+    // each logger's counts (one per template it has logged) so clearing a logger doesn't visit every template
+    private static final Map<String, Queue<TemplateStats.LoggerCounts>> countsByLogger = new ConcurrentHashMap<>();
+    private static volatile boolean full;
+
+    private TemplateCatalog() {
+    }
+
+    /**
+     * returns the stats of {@code template} or {@code null} if it hasn't been captured (or the catalog was full when it was)
+     */
+    public static TemplateStats get(String template) {
+        return statsByTemplate.get(template);
+    }
+
+    /**
+     * returns the stats of every cataloged template
+     */
+    public static List<TemplateStats> getAll() {
+        return List.copyOf(statsByTemplate.values());
+    }
+
+    /**
+     * returns the stats of the {@code n} templates with the most events (most first)
+     */
+    public static List<TemplateStats> topTemplates(int n) {
+        return statsByTemplate.values().stream()
+                              .map(stats -> Map.entry(stats, stats.getCount()))   // each count summed once
+                              .filter(entry -> entry.getValue() > 0)
+                              .sorted(Map.Entry.<TemplateStats, Long>comparingByValue(Comparator.reverseOrder()))
+                              .limit(n)
+                              .map(Map.Entry::getKey)
+                              .collect(Collectors.toList());
+    }
+
+    /**
+     * returns a table of the {@code n} templates with the most events: count, counts by level, template, and loggers
+     */
+    public static String report(int n) {
+        List<TemplateStats> top = topTemplates(n);
+        StringBuilder report = new StringBuilder(String.format("top %d of %d templates by count%n", top.size(),
+                                                               statsByTemplate.size()));
+        for (TemplateStats stats : top) {
+            report.append(String.format("%12d  %-40s  \"%s\"  %s%n", stats.getCount(), stats.getCountsByLevel(),
+                                        stats.getTemplate(), stats.getLoggerNames()));
+        }
+        if (full) {
+            report.append(String.format("(catalog full; templates beyond the first %d weren't counted)%n", MAX_TEMPLATES));
+        }
+        return report.toString();
+    }
+
+    /**
+     * whether templates have been left out because the catalog reached {@value #MAX_TEMPLATES} templates
+     */
+    public static boolean isFull() {
+        return full;
+    }
+
+    /**
+     * removes every template (e.g. between load-test runs)
+     */
+    public static void reset() {
+        statsByTemplate.clear();
+        countsByLogger.clear();
+        full = false;
+    }
+
+    /**
+     * counts {@code event} against its template
+     */
+    static void record(LogEvent event) {
+        String template = event.getMessage();
+        if (template == null) {
+            return;
+        }
+        TemplateStats stats = statsByTemplate.get(template);
+        if (stats == null) {
+            if (statsByTemplate.size() >= MAX_TEMPLATES) {
+                full = true;
+                return;
+            }
+            stats = statsByTemplate.computeIfAbsent(template, TemplateStats::new);
+        }
+        String loggerName = event.getLoggerName();
+        TemplateStats.LoggerCounts counts = stats.countsFor(loggerName);
+        if (counts == null) {
+            // only a logger's first event of each template pays for computeIfAbsent
+            counts = stats.addLogger(loggerName, countsByLogger.computeIfAbsent(loggerName,
+                                                                                ignore -> new ConcurrentLinkedQueue<>()));
+        }
+        counts.record(event.getLevel(), TemplateStats.toEpochNanos(event.getTimestamp()));
+    }
+
+    /**
+     * zeroes the counts (and forgets the first/last times) of {@code loggerName}'s events at {@code level} (every level if
+     * {@code null}) for every template that logger has logged
+     */
+    static void clear(String loggerName, Level level) {
+        Queue<TemplateStats.LoggerCounts> loggerCounts = countsByLogger.get(loggerName);
+        if (loggerCounts != null) {
+            loggerCounts.forEach(counts -> counts.clear(level));
+        }
+    }
+}
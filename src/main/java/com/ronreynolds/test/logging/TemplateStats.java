@@ -0,0 +1,228 @@
+package com.ronreynolds.test.logging;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.slf4j.event.Level;
+
+/**
+ * how many times one message template has been captured, by logger and level, and when the first and last of those events were
+ * logged; kept by {@link TemplateCatalog}.
+ * <p>
+ * counts are {@code LongAdder}s and the times {@code LongAccumulator}s so threads logging the same template don't contend;
+ * reads sum them so a count read while events are being captured is a snapshot, not a total. counts are only exact once capture
+ * is quiet: {@code LongAdder.reset()} isn't atomic so an event captured while its logger is being cleared may be counted before
+ * the clear or lost entirely.
+ */
+public final class TemplateStats {
+    private static final Level[] LEVELS = Level.values();
+
+    private final String template;
+    private final Map<String, LoggerCounts> countsByLogger = new ConcurrentHashMap<>();
+
+    TemplateStats(String template) {
+        this.template = template;
+    }
+
+    /**
+     * returns {@code loggerName}'s counts or {@code null} if it hasn't logged this template
+     */
+    LoggerCounts countsFor(String loggerName) {
+        return countsByLogger.get(loggerName);
+    }
+
+    /**
+     * returns {@code loggerName}'s counts, creating them (and adding them to {@code loggerIndex}) if needed
+     */
+    LoggerCounts addLogger(String loggerName, Collection<LoggerCounts> loggerIndex) {
+        return countsByLogger.computeIfAbsent(loggerName, ignore -> {
+            LoggerCounts counts = new LoggerCounts();
+            loggerIndex.add(counts);
+            return counts;
+        });
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * the number of events with this template (across all loggers and levels)
+     */
+    public long getCount() {
+        long count = 0;
+        for (LoggerCounts counts : countsByLogger.values()) {
+            count += counts.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * the number of events at {@code level} with this template
+     */
+    public long getCount(Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        long count = 0;
+        for (LoggerCounts counts : countsByLogger.values()) {
+            count += counts.getCount(level);
+        }
+        return count;
+    }
+
+    /**
+     * the number of events logged to {@code loggerName} with this template
+     */
+    public long getCount(String loggerName) {
+        LoggerCounts counts = countsByLogger.get(loggerName);
+        return counts != null ? counts.getCount() : 0;
+    }
+
+    /**
+     * the number of events at {@code level} logged to {@code loggerName} with this template
+     */
+    public long getCount(String loggerName, Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        LoggerCounts counts = countsByLogger.get(loggerName);
+        return counts != null ? counts.getCount(level) : 0;
+    }
+
+    /**
+     * when the earliest event with this template (across all loggers and levels) was logged; {@code null} if there are none
+     */
+    public Instant getFirstLogged() {
+        long first = Long.MAX_VALUE;
+        for (LoggerCounts counts : countsByLogger.values()) {
+            for (Level level : LEVELS) {
+                first = Math.min(first, counts.first[level.ordinal()].get());
+            }
+        }
+        return toInstant(first, Long.MAX_VALUE);
+    }
+
+    /**
+     * when the latest event with this template (across all loggers and levels) was logged; {@code null} if there are none
+     */
+    public Instant getLastLogged() {
+        long last = Long.MIN_VALUE;
+        for (LoggerCounts counts : countsByLogger.values()) {
+            for (Level level : LEVELS) {
+                last = Math.max(last, counts.last[level.ordinal()].get());
+            }
+        }
+        return toInstant(last, Long.MIN_VALUE);
+    }
+
+    /**
+     * when the earliest event at {@code level} logged to {@code loggerName} with this template was logged (since that logger's
+     * events at that level were last cleared); {@code null} if there are none
+     */
+    public Instant getFirstLogged(String loggerName, Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        LoggerCounts counts = countsByLogger.get(loggerName);
+        return counts != null ? toInstant(counts.first[level.ordinal()].get(), Long.MAX_VALUE) : null;
+    }
+
+    /**
+     * when the latest event at {@code level} logged to {@code loggerName} with this template was logged; {@code null} if there
+     * are none
+     */
+    public Instant getLastLogged(String loggerName, Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        LoggerCounts counts = countsByLogger.get(loggerName);
+        return counts != null ? toInstant(counts.last[level.ordinal()].get(), Long.MIN_VALUE) : null;
+    }
+
+    /**
+     * the count of each level that has any events with this template
+     */
+    public Map<Level, Long> getCountsByLevel() {
+        Map<Level, Long> countsByLevel = new EnumMap<>(Level.class);
+        for (Level level : LEVELS) {
+            long count = getCount(level);
+            if (count > 0) {
+                countsByLevel.put(level, count);
+            }
+        }
+        return countsByLevel;
+    }
+
+    /**
+     * the names of the loggers that have logged this template
+     */
+    public Set<String> getLoggerNames() {
+        return countsByLogger.keySet().stream().filter(loggerName -> getCount(loggerName) > 0).collect(Collectors.toSet());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s \"%s\" %s (logged %s..%s)", getCount(), getCountsByLevel(), template, getLoggerNames(),
+                             getFirstLogged(), getLastLogged());
+    }
+
+    /**
+     * a timestamp as nanoseconds since the epoch (a {@code long} covers the years 1678 to 2262)
+     */
+    static long toEpochNanos(Instant timestamp) {
+        return timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano();
+    }
+
+    private static Instant toInstant(long epochNanos, long none) {
+        return epochNanos != none ? Instant.ofEpochSecond(0, epochNanos) : null;
+    }
+
+    /**
+     * one logger's count and first/last timestamps (as epoch nanoseconds) for each level (indexed by {@code Level.ordinal()})
+     */
+    static final class LoggerCounts {
+        private final LongAdder[] counts = new LongAdder[LEVELS.length];
+        private final LongAccumulator[] first = new LongAccumulator[LEVELS.length];
+        private final LongAccumulator[] last = new LongAccumulator[LEVELS.length];
+
+        LoggerCounts() {
+            for (int i = 0; i < LEVELS.length; ++i) {
+                counts[i] = new LongAdder();
+                first[i] = new LongAccumulator(Math::min, Long.MAX_VALUE);
+                last[i] = new LongAccumulator(Math::max, Long.MIN_VALUE);
+            }
+        }
+
+        void record(Level level, long epochNanos) {
+            int index = level.ordinal();
+            counts[index].increment();
+            first[index].accumulate(epochNanos);
+            last[index].accumulate(epochNanos);
+        }
+
+        /**
+         * zeroes the count and forgets the first/last timestamps at {@code level} (every level if {@code null})
+         */
+        void clear(Level level) {
+            for (int i = 0; i < LEVELS.length; ++i) {
+                if (level == null || level.ordinal() == i) {
+                    counts[i].reset();
+                    first[i].reset();
+                    last[i].reset();
+                }
+            }
+        }
+
+        long getCount() {
+            long count = 0;
+            for (LongAdder levelCount : counts) {
+                count += levelCount.sum();
+            }
+            return count;
+        }
+
+        long getCount(Level level) {
+            return counts[level.ordinal()].sum();
+        }
+    }
+}
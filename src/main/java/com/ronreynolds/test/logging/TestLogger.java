@@ -1,13 +1,18 @@
 package com.ronreynolds.test.logging;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import org.slf4j.Marker;
 import org.slf4j.event.Level;
 import org.slf4j.helpers.AbstractLogger;
@@ -16,15 +21,38 @@ public class TestLogger extends AbstractLogger {
     // static fields
     //
     // cache of TestLogger instances by name
-    private static final Map<String, TestLogger> testLoggerMap = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, TestLogger> testLoggerMap = new ConcurrentHashMap<>();
+    // the number of loggers above which the static queries and resetAll() run in parallel (on the common ForkJoinPool)
+    private static final long PARALLEL_THRESHOLD = Long.getLong("TestLogger.parallelThreshold", 128);
     private static final Consumer<LogEvent> BLACKHOLE = (t) -> {
     };
     // the callback used when no TestLogger-level callback is specified
     private static Consumer<LogEvent> defaultOnEventConsumer = BLACKHOLE;
-    // the level used when no level is specified
-    private static Level defaultLogLevel = Level.INFO;
+    // the level used when no level is specified (for the logger or any of its ancestors)
+    private static volatile Level defaultLogLevel = Level.INFO;
+    // levels configured by logger-name (prefix); e.g. "com.acme.db" applies to "com.acme.db" and "com.acme.db.Dao"
+    private static final Map<String, Level> loggerLevelMap = new ConcurrentHashMap<>();
+    // incremented whenever any level changes so each logger knows its cached ResolvedLevel is stale
+    private static final AtomicInteger levelGeneration = new AtomicInteger();
+    // the retention policy used when no policy is specified
+    private static volatile RetentionPolicy defaultRetentionPolicy = RetentionPolicy.unbounded();
+    private static volatile CallerCapture defaultCallerCapture = CallerCapture.off();
+    private static volatile ThrowableCapture defaultThrowableCapture = ThrowableCapture.full();
+    private static volatile CapturePolicy defaultCapturePolicy = CapturePolicy.all();
+    // the capture filter used when no filter is specified (null means capture every call)
+    private static volatile CaptureFilter defaultCaptureFilter = null;
+    // per-thread arrays reused to pass the args of 1- and 2-arg calls to capture filters (so filtering allocates nothing)
+    private static final ThreadLocal<Object[][]> filterArgs = ThreadLocal.withInitial(() -> new Object[][]{new Object[1],
+                                                                                                            new Object[2]});
+    private static final Object[] NO_ARGS = {};
     private static final List<LogEvent> EMPTY_LIST = List.of();
-    private static final Comparator<LogEvent> EVENTS_BY_ID = (e1, e2) -> e1.getEventId() - e2.getEventId();
+    private static final Level[] LEVELS = Level.values();
+
+    static {
+        if (Boolean.getBoolean("TestLogger.jmx")) {
+            CaptureMetrics.registerMBean();
+        }
+    }
 
     // static methods
     //
@@ -41,6 +69,30 @@ public class TestLogger extends AbstractLogger {
      */
     public static void setDefaultLoggerLevel(Level level) {
         defaultLogLevel = Objects.requireNonNull(level, "default log level must not be null");
+        levelGeneration.incrementAndGet();
+    }
+
+    /**
+     * sets the level (logback-style) for the logger with the specified name and all loggers below it in the name hierarchy
+     * (e.g. {@code "com.acme.db"} applies to {@code "com.acme.db.Dao"}) that don't have a level of their own or a closer
+     * configured ancestor; pass in {@code null} to remove the configured level
+     */
+    public static void setLoggerLevel(String loggerName, Level level) {
+        Objects.requireNonNull(loggerName, "logger name must not be null");
+        if (level != null) {
+            loggerLevelMap.put(loggerName, level);
+        } else {
+            loggerLevelMap.remove(loggerName);
+        }
+        levelGeneration.incrementAndGet();
+    }
+
+    /**
+     * removes all levels configured via {@link #setLoggerLevel(String, Level)}
+     */
+    public static void resetLoggerLevels() {
+        loggerLevelMap.clear();
+        levelGeneration.incrementAndGet();
     }
 
     /**
@@ -51,29 +103,150 @@ public class TestLogger extends AbstractLogger {
     }
 
     /**
-     * returns a list of all events of the specified level across ALL TestLogger instances
+     * sets the retention policy for newly-created loggers and cached loggers that don't have their own policy set;
+     * changing the policy of an existing logger keeps its most recent events that fit the new policy
+     */
+    public static void setDefaultRetentionPolicy(RetentionPolicy retentionPolicy) {
+        defaultRetentionPolicy = Objects.requireNonNull(retentionPolicy, "default retention policy must not be null");
+        testLoggerMap.values().forEach(logger -> {
+            if (logger.retentionPolicy == null) {
+                logger.replaceEventStore(retentionPolicy);
+            }
+        });
+    }
+
+    /**
+     * sets whether loggers that don't have their own caller-capture setting record where each log call came from
+     */
+    public static void setDefaultCallerCapture(CallerCapture callerCapture) {
+        defaultCallerCapture = Objects.requireNonNull(callerCapture, "default caller capture must not be null");
+    }
+
+    /**
+     * sets what loggers that don't have their own throwable-capture setting keep of logged {@code Throwable}s
+     */
+    public static void setDefaultThrowableCapture(ThrowableCapture throwableCapture) {
+        defaultThrowableCapture = Objects.requireNonNull(throwableCapture, "default throwable capture must not be null");
+    }
+
+    /**
+     * sets which log calls are captured by newly-created loggers and cached loggers that don't have their own capture policy
+     * (each starts the policy afresh)
+     */
+    public static void setDefaultCapturePolicy(CapturePolicy capturePolicy) {
+        defaultCapturePolicy = Objects.requireNonNull(capturePolicy, "default capture policy must not be null");
+        testLoggerMap.values().forEach(logger -> {
+            if (logger.capturePolicy == null) {
+                logger.replaceCaptureGate(capturePolicy);
+            }
+        });
+    }
+
+    /**
+     * sets which log calls are captured by loggers that don't have their own capture filter; pass in {@code null} to capture
+     * every call
+     */
+    public static void setDefaultCaptureFilter(CaptureFilter captureFilter) {
+        defaultCaptureFilter = captureFilter;
+    }
+
+    /**
+     * returns a list of all events of the specified level across ALL TestLogger instances in the order they occurred
      */
     public static List<LogEvent> getAllEventsAtLevel(Level level) {
-        return testLoggerMap.values().stream()
-                            .flatMap((logger) -> logger._getEventsAtLevel(level).stream())
-                            .collect(Collectors.toList());
+        Objects.requireNonNull(level, "null level not allowed");
+        // the scope is read here since the workers of a parallel reduction don't inherit it
+        CaptureScope scope = CaptureScope.current();
+        // each logger's events are already chronological so pairwise merges (in parallel for many loggers) are enough
+        List<LogEvent> events = testLoggerMap.reduceValues(PARALLEL_THRESHOLD, logger -> {
+            List<LogEvent> levelEvents = logger.getEventStore(scope).getEventsAtLevel(level);
+            return levelEvents.isEmpty() ? null : levelEvents;
+        }, EventOrder::merge);
+        return events != null ? events : EMPTY_LIST;
+    }
+
+    /**
+     * returns the statistics of the events across ALL TestLogger instances; computed from each logger's events without
+     * copying them (in parallel for many loggers)
+     */
+    public static EventStatistics getAllEventStatistics() {
+        return aggregateStatistics(EventStore::getAllEvents);
+    }
+
+    /**
+     * returns the statistics of the events of the specified level across ALL TestLogger instances
+     */
+    public static EventStatistics getAllEventStatisticsAtLevel(Level level) {
+        Objects.requireNonNull(level, "null level not allowed");
+        return aggregateStatistics(store -> store.getEventsAtLevel(level));
+    }
+
+    /**
+     * returns a query over the events of ALL TestLogger instances (see {@code EventQuery})
+     */
+    public static EventQuery query() {
+        return new EventQuery(testLoggerMap::values);
     }
 
     /**
      * reset ALL TestLogger instances
      */
     public static void resetAll() {
-        testLoggerMap.values().forEach(TestLogger::reset);
+        CaptureScope scope = CaptureScope.current();
+        // one watermark for every store (each waits for the clock to tick when it takes its own)
+        long watermark = EventOrder.watermark();
+        testLoggerMap.forEachValue(PARALLEL_THRESHOLD, logger -> logger.reset(scope, store -> store.reset(watermark)));
+    }
+
+    /**
+     * every cached TestLogger (for {@code CaptureMetrics})
+     */
+    static Collection<TestLogger> cachedLoggers() {
+        return testLoggerMap.values();
+    }
+
+    private static EventStatistics aggregateStatistics(Function<EventStore, List<LogEvent>> events) {
+        CaptureScope scope = CaptureScope.current();
+        EventStatistics.Accumulator statistics = testLoggerMap.reduceValues(PARALLEL_THRESHOLD, logger -> {
+            List<LogEvent> loggerEvents = events.apply(logger.getEventStore(scope));
+            if (loggerEvents.isEmpty()) {
+                return null;
+            }
+            EventStatistics.Accumulator loggerStatistics = new EventStatistics.Accumulator();
+            loggerEvents.forEach(loggerStatistics::add);
+            return loggerStatistics;
+        }, EventStatistics.Accumulator::combine);
+        return statistics != null ? statistics.finish() : EventStatistics.empty();
     }
 
     // instance-level fields
     //
-    // lists of LogEvents by Level
-    private final Map<Level, List<LogEvent>> logEventMap = new ConcurrentHashMap<>();
+    // LogEvents stored according to the effective retention policy
+    private volatile EventStore eventStore = defaultRetentionPolicy.newEventStore();
+    // the retention policy for this TestLogger (null means use the default)
+    private RetentionPolicy retentionPolicy = null;
     // TestLogger-level callback to observe LogEvents
     private Consumer<LogEvent> onEventConsumer;
+    // whether events record their caller (null means use the default)
+    private volatile CallerCapture callerCapture = null;
+    // what events keep of their Throwable (null means use the default)
+    private volatile ThrowableCapture throwableCapture = null;
+    // which log calls are captured (null means use the default)
+    private volatile CapturePolicy capturePolicy = null;
+    // which log calls are captured, by content (null means use the default)
+    private volatile CaptureFilter captureFilter = null;
+    // this logger's state for its effective capture policy
+    private volatile CaptureGate captureGate = defaultCapturePolicy.newGate();
     // the log-level for this TestLogger
-    private Level logLevel = null;
+    private volatile Level logLevel = null;
+    // the effective level (own, ancestor's, or default) cached until levelGeneration changes
+    private volatile ResolvedLevel resolvedLevel = ResolvedLevel.STALE;
+    // events captured (including scoped ones) by Level.ordinal(); only zeroed by CaptureMetrics.reset()
+    private final LongAdder[] capturedCounts = newCounts();
+    // wakes threads in awaitEvent()/awaitCount()
+    private final EventSignal eventSignal = new EventSignal();
+    // serializes replacing the event store (a ReentrantLock so a virtual thread waiting for it doesn't pin its carrier)
+    private final ReentrantLock storeLock = new ReentrantLock();
 
     // instance-level methods
     //
@@ -86,11 +259,145 @@ public class TestLogger extends AbstractLogger {
      */
     public TestLogger setLogLevel(Level logLevel) {
         this.logLevel = logLevel;
+        levelGeneration.incrementAndGet();
         return this;
     }
 
+    /**
+     * returns the log-level for this TestLogger if set; otherwise the level configured for its closest ancestor (via
+     * {@link #setLoggerLevel(String, Level)}); otherwise the default log-level
+     */
     public Level getLogLevel() {
-        return logLevel != null ? logLevel : defaultLogLevel;
+        return resolvedLevel().level;
+    }
+
+    /**
+     * sets the retention policy for this TestLogger; pass in {@code null} to use the default retention policy.
+     * events already captured that fit the new policy are kept (events logged while the policy is being changed may be lost)
+     */
+    public TestLogger setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+        replaceEventStore(retentionPolicy != null ? retentionPolicy : defaultRetentionPolicy);
+        return this;
+    }
+
+    public RetentionPolicy getRetentionPolicy() {
+        return eventStore.getRetentionPolicy();
+    }
+
+    /**
+     * sets whether this TestLogger's events record where the log call came from (see {@code LogEvent.getSource()});
+     * pass in {@code null} to use the default
+     */
+    public TestLogger setCallerCapture(CallerCapture callerCapture) {
+        this.callerCapture = callerCapture;
+        return this;
+    }
+
+    public CallerCapture getCallerCapture() {
+        CallerCapture capture = callerCapture;
+        return capture != null ? capture : defaultCallerCapture;
+    }
+
+    /**
+     * sets what this TestLogger's events keep of a logged {@code Throwable} (the {@code Throwable} itself or a truncated copy);
+     * pass in {@code null} to use the default
+     */
+    public TestLogger setThrowableCapture(ThrowableCapture throwableCapture) {
+        this.throwableCapture = throwableCapture;
+        return this;
+    }
+
+    public ThrowableCapture getThrowableCapture() {
+        ThrowableCapture capture = throwableCapture;
+        return capture != null ? capture : defaultThrowableCapture;
+    }
+
+    /**
+     * sets which of this TestLogger's (enabled) log calls are captured, e.g. {@code CapturePolicy.sampled(100)} for a load test;
+     * the policy starts afresh. pass in {@code null} to use the default
+     */
+    public TestLogger setCapturePolicy(CapturePolicy capturePolicy) {
+        this.capturePolicy = capturePolicy;
+        replaceCaptureGate(capturePolicy != null ? capturePolicy : defaultCapturePolicy);
+        return this;
+    }
+
+    public CapturePolicy getCapturePolicy() {
+        CapturePolicy policy = capturePolicy;
+        return policy != null ? policy : defaultCapturePolicy;
+    }
+
+    /**
+     * sets which of this TestLogger's (enabled) log calls are captured based on their level, marker, template, and args (see
+     * {@code CaptureFilter}); pass in {@code null} to use the default
+     */
+    public TestLogger setCaptureFilter(CaptureFilter captureFilter) {
+        this.captureFilter = captureFilter;
+        return this;
+    }
+
+    /**
+     * returns the capture filter in effect for this TestLogger; {@code null} if every call is captured
+     */
+    public CaptureFilter getCaptureFilter() {
+        CaptureFilter filter = captureFilter;
+        return filter != null ? filter : defaultCaptureFilter;
+    }
+
+    /**
+     * returns the number of log calls at {@code level} the capture policy skipped since it was set or this logger was reset
+     */
+    public long getSkippedEventCount(Level level) {
+        return captureGate.getSkippedCount(Objects.requireNonNull(level, "null level not allowed"));
+    }
+
+    /**
+     * returns the number of log calls (of all levels) the capture policy skipped
+     */
+    public long getSkippedEventCount() {
+        return captureGate.getSkippedCount();
+    }
+
+    /**
+     * returns the number of events at {@code level} evicted by the retention policy since the level was last cleared;
+     * if non-zero then {@code getEventsAtLevel(level)} is only the tail of the events logged at that level
+     */
+    public long getDroppedEventCount(Level level) {
+        return getEventStore().getDroppedCount(Objects.requireNonNull(level, "null level not allowed"));
+    }
+
+    /**
+     * returns the number of events (of all levels) evicted by the retention policy
+     */
+    public long getDroppedEventCount() {
+        return getEventStore().getDroppedCount();
+    }
+
+    /**
+     * returns the number of events captured at {@code level} (whether or not they're still retained) since
+     * {@code CaptureMetrics.reset()}
+     */
+    public long getCapturedEventCount(Level level) {
+        return capturedCounts[Objects.requireNonNull(level, "null level not allowed").ordinal()].sum();
+    }
+
+    /**
+     * returns the number of events (of all levels) captured since {@code CaptureMetrics.reset()}
+     */
+    public long getCapturedEventCount() {
+        long count = 0;
+        for (LongAdder adder : capturedCounts) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * returns an estimate of the heap held by this logger's retained events (see {@code CaptureMetrics})
+     */
+    public long getRetainedBytesEstimate() {
+        return getEventStore().getRetainedBytesEstimate();
     }
 
     /**
@@ -102,45 +409,130 @@ public class TestLogger extends AbstractLogger {
     }
 
     /**
-     * returns a copy of the logEventMap to avoid thread-safety issues caused by exposing internal data
+     * returns an immutable snapshot of the events by level (later events and clears don't change it)
      */
     public Map<Level, List<LogEvent>> getLogEventMap() {
-        return Map.copyOf(logEventMap);
+        return getEventStore().getLogEventMap();
     }
 
     /**
-     * returns a copy of the `List<LogEvent>` to avoid thread-safety issues caused by exposing internal data
+     * returns an immutable snapshot of the events at {@code level}; with the unbounded retention policy it's a view of the
+     * logger's storage rather than a copy (only the events logged since the previous view are copied and sorted)
      */
     public List<LogEvent> getEventsAtLevel(Level level) {
-        List<LogEvent> eventList = logEventMap.get(level);
-        return eventList != null ? List.copyOf(eventList) : List.of();
+        return getEventStore().getEventsAtLevel(level);
     }
 
     /**
      * returns a list of all LogEvents across all levels for this logger
      */
     public List<LogEvent> getAllEvents() {
-        return logEventMap.values().stream()
-                          .flatMap(List::stream)
-                          .sorted(EVENTS_BY_ID) // so they're returned chronologically
-                          .collect(Collectors.toList());
+        return getEventStore().getAllEvents(); // chronologically
+    }
+
+    /**
+     * returns the statistics of this logger's events (without copying them)
+     */
+    public EventStatistics getEventStatistics() {
+        return getAllEvents().stream().collect(EventStatistics.collector());
+    }
+
+    /**
+     * asserts that {@code template} (the message before args are substituted) was logged at {@code level} exactly
+     * {@code times} times since this logger's events at that level were last cleared (including any the retention policy
+     * dropped); a lookup in the {@link TemplateCatalog} rather than a scan of the events, for which see
+     * {@code LogEventListAssert.templateLoggedTimes()}
+     * @return this TestLogger (for method chaining)
+     * @throws AssertionError if it wasn't
+     * @throws IllegalStateException if the catalog can't tell: a {@code CaptureScope} is current (scoped events aren't
+     * cataloged) or the catalog was full when {@code template} was first logged
+     */
+    public TestLogger assertTemplateLoggedTimes(Level level, String template, long times) {
+        Objects.requireNonNull(level, "null level not allowed");
+        Objects.requireNonNull(template, "template must not be null");
+        if (CaptureScope.current() != null) {
+            throw new IllegalStateException("events captured in a CaptureScope aren't cataloged; scan them with "
+                                            + "LogEventListAssert.templateLoggedTimes()");
+        }
+        TemplateStats stats = TemplateCatalog.get(template);
+        if (stats == null && TemplateCatalog.isFull()) {
+            throw new IllegalStateException("TemplateCatalog is full so \"" + template + "\" may not be cataloged; scan the "
+                                            + "events with LogEventListAssert.templateLoggedTimes()");
+        }
+        long count = stats != null ? stats.getCount(getName(), level) : 0;
+        if (count != times) {
+            throw new AssertionError(String.format("Expecting template \"%s\" to be logged %d times at %s by %s but it was "
+                                                   + "logged %d times", template, times, level, getName(), count));
+        }
+        return this;
+    }
+
+    /**
+     * waits up to {@code timeout} for this logger to capture an event matching {@code predicate} (events captured before the
+     * call count too); wakes as soon as a matching event is captured so tests of asynchronous code needn't poll. the events
+     * captured before the call are scanned once; after that only newly captured events are tested.
+     * @return the first matching event or {@code null} if none was captured in time (or the thread was interrupted)
+     */
+    public LogEvent awaitEvent(Predicate<? super LogEvent> predicate, Duration timeout) {
+        Objects.requireNonNull(predicate, "predicate must not be null");
+        Objects.requireNonNull(timeout, "timeout must not be null");
+        CaptureScope scope = CaptureScope.current();
+        return eventSignal.await(scope, () -> {
+            for (LogEvent event : getEventStore(scope).getAllEvents()) {
+                if (predicate.test(event)) {
+                    return event;
+                }
+            }
+            return null;
+        }, event -> predicate.test(event) ? event : null, timeout);
+    }
+
+    /**
+     * waits up to {@code timeout} for this logger to hold at least {@code count} events at {@code level}; newly captured events
+     * are counted as they arrive and the logger's events only listed again once they add up to {@code count} (to confirm none
+     * were dropped or cleared meanwhile)
+     * @return {@code true} if it does; {@code false} if the timeout elapsed first (or the thread was interrupted)
+     */
+    public boolean awaitCount(Level level, int count, Duration timeout) {
+        Objects.requireNonNull(level, "null level not allowed");
+        Objects.requireNonNull(timeout, "timeout must not be null");
+        CaptureScope scope = CaptureScope.current();
+        // the events at level as last listed plus those captured since (only touched by this thread)
+        int[] held = new int[1];
+        Supplier<Boolean> list = () -> {
+            held[0] = getEventStore(scope).getEventsAtLevel(level).size();
+            return held[0] >= count ? Boolean.TRUE : null;
+        };
+        return eventSignal.await(scope, list, event -> event.getLevel() == level && ++held[0] >= count ? list.get() : null,
+                                 timeout) != null;
     }
 
     /**
      * removes the log event list of the specified level
      */
     public void clearEventsAtLevel(Level level) {
-        List<LogEvent> eventList = logEventMap.get(Objects.requireNonNull(level, "null level not allowed"));
-        if (eventList != null) {
-            // to prevent concurrent mod of this list by both this method and addEvent(LogEvent)
-            synchronized (eventList) {
-                eventList.clear();
-            }
+        Objects.requireNonNull(level, "null level not allowed");
+        CaptureScope scope = CaptureScope.current();
+        if (scope != null) {
+            scope.peekStore(this).clearEventsAtLevel(level);
+        } else {
+            eventStore.clearEventsAtLevel(level);
+            TemplateCatalog.clear(getName(), level);
         }
     }
 
     public void reset() {
-        logEventMap.clear();
+        reset(CaptureScope.current(), EventStore::reset);
+    }
+
+    private void reset(CaptureScope scope, Consumer<EventStore> storeReset) {
+        if (scope != null) {
+            storeReset.accept(scope.peekStore(this));
+        } else {
+            storeReset.accept(eventStore);
+            TemplateCatalog.clear(getName(), null);
+            replaceCaptureGate(getCapturePolicy());     // e.g. firstPerTemplate() captures each template again
+        }
     }
 
     /**
@@ -149,28 +541,134 @@ public class TestLogger extends AbstractLogger {
     public NoThrowAutoCloseable resetOnClose() {
         final Level startingLogLevel = this.logLevel;
         final Consumer<LogEvent> startingConsumer = this.onEventConsumer;
+        final RetentionPolicy startingRetentionPolicy = this.retentionPolicy;
+        final CallerCapture startingCallerCapture = this.callerCapture;
+        final ThrowableCapture startingThrowableCapture = this.throwableCapture;
+        final CapturePolicy startingCapturePolicy = this.capturePolicy;
+        final CaptureFilter startingCaptureFilter = this.captureFilter;
         return NoThrowAutoCloseable.of(() -> {
-            this.logLevel = startingLogLevel;
+            this.setLogLevel(startingLogLevel);
             this.setOnEvent(startingConsumer);
+            this.setCallerCapture(startingCallerCapture);
+            this.setThrowableCapture(startingThrowableCapture);
+            this.setCapturePolicy(startingCapturePolicy);
+            this.setCaptureFilter(startingCaptureFilter);
             reset();
+            if (!Objects.equals(startingRetentionPolicy, this.retentionPolicy)) {
+                this.setRetentionPolicy(startingRetentionPolicy);
+            }
         });
     }
 
     private void addEvent(LogEvent event) {
-        List<LogEvent> eventList = logEventMap.computeIfAbsent(event.getLevel(), ignore -> new ArrayList<>());
-        // used to prevent concurrent-mod with clearEventsAtLevel()
-        synchronized (eventList) {
-            eventList.add(event);
-        }
-        if (onEventConsumer != null) {
-            onEventConsumer.accept(event);
+        CaptureScope scope = CaptureScope.current();
+        if (scope != null) {
+            scope.storeFor(this).add(event);
         } else {
-            defaultOnEventConsumer.accept(event);
+            eventStore.add(event);
+            TemplateCatalog.record(event);  // scoped events are isolated from the (global) catalog
+        }
+        capturedCounts[event.getLevel().ordinal()].increment();
+        eventSignal.signal(scope, event);   // after the event is stored so woken waiters see it
+        Consumer<LogEvent> consumer = onEventConsumer != null ? onEventConsumer : defaultOnEventConsumer;
+        if (consumer == BLACKHOLE) {
+            return;     // nothing to time
+        }
+        long start = System.nanoTime();
+        try {
+            consumer.accept(event);
+        } finally {
+            CaptureMetrics.get().recordOnEvent(System.nanoTime() - start);
         }
     }
 
-    private List<LogEvent> _getEventsAtLevel(Level level) {
-        return logEventMap.getOrDefault(level, List.of());
+    /**
+     * this logger's own store (ignoring any {@code CaptureScope}) for {@code CaptureMetrics}
+     */
+    EventStore ownEventStore() {
+        return eventStore;
+    }
+
+    void resetCapturedEventCounts() {
+        for (LongAdder adder : capturedCounts) {
+            adder.reset();
+        }
+    }
+
+    private static LongAdder[] newCounts() {
+        LongAdder[] counts = new LongAdder[LEVELS.length];
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = new LongAdder();
+        }
+        return counts;
+    }
+
+    /**
+     * the store events are read from: the current {@code CaptureScope}'s store for this logger if there is one (empty if the
+     * logger hasn't captured anything in the scope); otherwise this logger's own
+     */
+    EventStore getEventStore() {
+        return getEventStore(CaptureScope.current());
+    }
+
+    /**
+     * the store for {@code scope} (which may be {@code null}); for work handed to other threads which can't see the caller's
+     * scope
+     */
+    EventStore getEventStore(CaptureScope scope) {
+        return scope != null ? scope.peekStore(this) : eventStore;
+    }
+
+    /**
+     * returns the cached effective level; only re-resolved (walking up the logger-name hierarchy) after a level changes
+     */
+    private ResolvedLevel resolvedLevel() {
+        ResolvedLevel resolved = resolvedLevel;
+        int generation = levelGeneration.get();
+        if (resolved.generation != generation) {
+            // levels read after the generation so a change made during this resolution leaves the result stale, not wrong
+            resolved = new ResolvedLevel(generation, resolveLevel());
+            resolvedLevel = resolved;
+        }
+        return resolved;
+    }
+
+    private Level resolveLevel() {
+        Level level = logLevel;
+        if (level != null) {
+            return level;
+        }
+        if (!loggerLevelMap.isEmpty()) {
+            String loggerName = getName();
+            while (loggerName != null) {
+                level = loggerLevelMap.get(loggerName);
+                if (level != null) {
+                    return level;
+                }
+                int lastDot = Math.max(loggerName.lastIndexOf('.'), loggerName.lastIndexOf('$'));
+                loggerName = lastDot > 0 ? loggerName.substring(0, lastDot) : null;
+            }
+        }
+        return defaultLogLevel;
+    }
+
+    private void replaceCaptureGate(CapturePolicy capturePolicy) {
+        captureGate = capturePolicy.newGate();
+    }
+
+    private void replaceEventStore(RetentionPolicy retentionPolicy) {
+        SpinWait.lock(storeLock);
+        try {
+            EventStore oldStore = eventStore;
+            if (oldStore.getRetentionPolicy().equals(retentionPolicy)) {
+                return;
+            }
+            EventStore newStore = retentionPolicy.newEventStore();
+            oldStore.getAllEvents().forEach(newStore::add);
+            eventStore = newStore;
+        } finally {
+            storeLock.unlock();
+        }
     }
 
     @Override
@@ -180,32 +678,102 @@ public class TestLogger extends AbstractLogger {
 
     @Override
     protected void handleNormalizedLoggingCall(Level level, Marker marker, String message, Object[] msgArgs, Throwable throwable) {
-        addEvent(new LogEvent(level, getName(), marker, message, msgArgs, throwable));
+        CaptureFilter filter = getCaptureFilter();
+        if (filter != null && !filter.accept(level, marker, message, msgArgs != null ? msgArgs : NO_ARGS)) {
+            return;
+        }
+        if (captureGate.tryCapture(level, message)) {
+            capture(level, marker, message, msgArgs, throwable);
+        }
+    }
+
+    /**
+     * the 1-arg calls (which {@code AbstractLogger} would wrap in an array before {@code handleNormalizedLoggingCall()}) are
+     * checked against the capture filter and policy first so calls that aren't captured allocate nothing
+     */
+    private void handle1ArgCall(Level level, Marker marker, String message, Object arg, Throwable throwable) {
+        if (throwable == null && arg instanceof Throwable) {
+            // a lone Throwable arg is the event's Throwable, not an arg (as in LogEvent), so the filter mustn't see it as one
+            handleNormalizedLoggingCall(level, marker, message, null, (Throwable) arg);
+            return;
+        }
+        CaptureFilter filter = getCaptureFilter();
+        if (filter != null) {
+            Object[] args = filterArgs.get()[0];
+            args[0] = arg;
+            try {
+                if (!filter.accept(level, marker, message, args)) {
+                    return;
+                }
+            } finally {
+                args[0] = null;
+            }
+        }
+        if (captureGate.tryCapture(level, message)) {
+            capture(level, marker, message, new Object[]{arg}, throwable);
+        }
+    }
+
+    /**
+     * as {@link #handle1ArgCall}; a {@code Throwable} second arg is the event's {@code Throwable} (as {@code AbstractLogger} does)
+     */
+    private void handle2ArgCall(Level level, Marker marker, String message, Object arg1, Object arg2) {
+        if (arg2 instanceof Throwable) {
+            handle1ArgCall(level, marker, message, arg1, (Throwable) arg2);
+            return;
+        }
+        CaptureFilter filter = getCaptureFilter();
+        if (filter != null) {
+            Object[] args = filterArgs.get()[1];
+            args[0] = arg1;
+            args[1] = arg2;
+            try {
+                if (!filter.accept(level, marker, message, args)) {
+                    return;
+                }
+            } finally {
+                args[0] = null;
+                args[1] = null;
+            }
+        }
+        if (captureGate.tryCapture(level, message)) {
+            capture(level, marker, message, new Object[]{arg1, arg2}, null);
+        }
+    }
+
+    private void capture(Level level, Marker marker, String message, Object[] msgArgs, Throwable throwable) {
+        StackTraceElement caller = getCallerCapture().captureCaller();
+        LogEvent event = new LogEvent(level, getName(), marker, message, msgArgs, throwable, caller);
+        ThrowableCapture capture = getThrowableCapture();
+        if (capture.isTruncated() && event.getThrown() != null) {
+            event.withThrown(capture.capture(event.getThrown()));
+        }
+        addEvent(event);
     }
 
     @Override
     public boolean isTraceEnabled() {
-        return getLogLevel().toInt() <= Level.TRACE.toInt();
+        return resolvedLevel().threshold <= Level.TRACE.toInt();
     }
 
     @Override
     public boolean isDebugEnabled() {
-        return getLogLevel().toInt() <= Level.DEBUG.toInt();
+        return resolvedLevel().threshold <= Level.DEBUG.toInt();
     }
 
     @Override
     public boolean isInfoEnabled() {
-        return getLogLevel().toInt() <= Level.INFO.toInt();
+        return resolvedLevel().threshold <= Level.INFO.toInt();
     }
 
     @Override
     public boolean isWarnEnabled() {
-        return getLogLevel().toInt() <= Level.WARN.toInt();
+        return resolvedLevel().threshold <= Level.WARN.toInt();
     }
 
     @Override
     public boolean isErrorEnabled() {
-        return getLogLevel().toInt() <= Level.ERROR.toInt();
+        return resolvedLevel().threshold <= Level.ERROR.toInt();
     }
 
     @Override
@@ -232,4 +800,165 @@ public class TestLogger extends AbstractLogger {
     public boolean isErrorEnabled(Marker marker) {
         return isErrorEnabled();
     }
-}
+
+    // the 1- and 2-arg logging methods; overridden (from AbstractLogger) only to apply the capture policy before the args are
+    // wrapped in an array (see handle1ArgCall())
+
+    @Override
+    public void trace(String format, Object arg) {
+        if (isTraceEnabled()) {
+            handle1ArgCall(Level.TRACE, null, format, arg, null);
+        }
+    }
+
+    @Override
+    public void trace(String format, Object arg1, Object arg2) {
+        if (isTraceEnabled()) {
+            handle2ArgCall(Level.TRACE, null, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object arg) {
+        if (isTraceEnabled(marker)) {
+            handle1ArgCall(Level.TRACE, marker, format, arg, null);
+        }
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object arg1, Object arg2) {
+        if (isTraceEnabled(marker)) {
+            handle2ArgCall(Level.TRACE, marker, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        if (isDebugEnabled()) {
+            handle1ArgCall(Level.DEBUG, null, format, arg, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        if (isDebugEnabled()) {
+            handle2ArgCall(Level.DEBUG, null, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object arg) {
+        if (isDebugEnabled(marker)) {
+            handle1ArgCall(Level.DEBUG, marker, format, arg, null);
+        }
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object arg1, Object arg2) {
+        if (isDebugEnabled(marker)) {
+            handle2ArgCall(Level.DEBUG, marker, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        if (isInfoEnabled()) {
+            handle1ArgCall(Level.INFO, null, format, arg, null);
+        }
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        if (isInfoEnabled()) {
+            handle2ArgCall(Level.INFO, null, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object arg) {
+        if (isInfoEnabled(marker)) {
+            handle1ArgCall(Level.INFO, marker, format, arg, null);
+        }
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object arg1, Object arg2) {
+        if (isInfoEnabled(marker)) {
+            handle2ArgCall(Level.INFO, marker, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        if (isWarnEnabled()) {
+            handle1ArgCall(Level.WARN, null, format, arg, null);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        if (isWarnEnabled()) {
+            handle2ArgCall(Level.WARN, null, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object arg) {
+        if (isWarnEnabled(marker)) {
+            handle1ArgCall(Level.WARN, marker, format, arg, null);
+        }
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object arg1, Object arg2) {
+        if (isWarnEnabled(marker)) {
+            handle2ArgCall(Level.WARN, marker, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        if (isErrorEnabled()) {
+            handle1ArgCall(Level.ERROR, null, format, arg, null);
+        }
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        if (isErrorEnabled()) {
+            handle2ArgCall(Level.ERROR, null, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object arg) {
+        if (isErrorEnabled(marker)) {
+            handle1ArgCall(Level.ERROR, marker, format, arg, null);
+        }
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object arg1, Object arg2) {
+        if (isErrorEnabled(marker)) {
+            handle2ArgCall(Level.ERROR, marker, format, arg1, arg2);
+        }
+    }
+
+    /**
+     * immutable so a logger's effective level and the generation it was resolved at are always read together
+     */
+    private static final class ResolvedLevel {
+        // never matches levelGeneration (which starts at 0 and only increases) so new loggers resolve on first use
+        static final ResolvedLevel STALE = new ResolvedLevel(-1, Level.INFO);
+
+        final int generation;
+        final Level level;
+        final int threshold;
+
+        ResolvedLevel(int generation, Level level) {
+            this.generation = generation;
+            this.level = level;
+            this.threshold = level.toInt();
+        }
+    }
+}
\ No newline at end of file
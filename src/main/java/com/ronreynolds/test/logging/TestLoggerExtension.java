@@ -0,0 +1,45 @@
+package com.ronreynolds.test.logging;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * JUnit 5 extension that runs each test in its own {@link CaptureScope} so tests only see the events they logged and
+ * {@code resetAll()} only resets the current test's events; this makes it safe to run tests that share loggers with
+ * {@code junit.jupiter.execution.parallel.enabled=true}.
+ * <p>
+ * events logged by threads the test starts are captured in its scope; wrap thread-pools the test hands work to with
+ * {@code CaptureScope.current().wrap(executor)}.
+ *
+ * USAGE:
+ @formatter:off
+ <pre>
+ &#64;ExtendWith(TestLoggerExtension.class)
+ class ParallelTest {
+    &#64;Test
+    void test() {
+        codeUnderTest();
+        assertThat(log, Level.INFO).hasSize(1);    // regardless of what other tests are logging concurrently
+    }
+ }
+ </pre>
+ @formatter:on
+ */
+public class TestLoggerExtension implements BeforeEachCallback, AfterEachCallback {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(TestLoggerExtension.class);
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        // a root scope: a worker thread of a parallel run may have inherited another test's scope
+        context.getStore(NAMESPACE).put(CaptureScope.class, CaptureScope.openRoot());
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        CaptureScope scope = context.getStore(NAMESPACE).remove(CaptureScope.class, CaptureScope.class);
+        if (scope != null) {
+            scope.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.ronreynolds.test.logging;
+
+/**
+ * the parts of {@code Thread}'s API that changed with virtual threads. this is the Java 11 version (every thread is a platform
+ * thread); {@code src/main/java21} has the Java 21 version, packaged in the multi-release jar's {@code META-INF/versions/21}.
+ */
+final class ThreadIdentity {
+    private ThreadIdentity() {
+    }
+
+    static long id(Thread thread) {
+        return thread.getId();
+    }
+
+    static boolean isVirtual(Thread thread) {
+        return false;
+    }
+}
@@ -0,0 +1,70 @@
+package com.ronreynolds.test.logging;
+
+/**
+ * controls what a {@code TestLogger} keeps of the {@code Throwable} logged with an event; the default ({@link #full()}) keeps
+ * the {@code Throwable} itself (so {@code LogEventAssert.hasThrown()} can compare it by identity).
+ * <p>
+ * {@link #truncated(int)} keeps a {@link CapturedThrowable} instead: a copy of at most {@code maxDepth} stack frames of the
+ * {@code Throwable}, its causes, and its suppressed exceptions, made once when the event is captured, so error-heavy tests don't
+ * retain large exception graphs (or whatever the exceptions reference).
+ */
+public final class ThrowableCapture {
+    private static final ThrowableCapture FULL = new ThrowableCapture(0);
+
+    // stack frames kept per Throwable (0 means the Throwable itself is kept)
+    private final int maxDepth;
+
+    private ThrowableCapture(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * keep the logged {@code Throwable} (the default)
+     */
+    public static ThrowableCapture full() {
+        return FULL;
+    }
+
+    /**
+     * keep a copy of the logged {@code Throwable} (and its causes and suppressed) with at most {@code maxDepth} stack frames each
+     */
+    public static ThrowableCapture truncated(int maxDepth) {
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        return new ThrowableCapture(maxDepth);
+    }
+
+    public boolean isTruncated() {
+        return maxDepth > 0;
+    }
+
+    /**
+     * the number of stack frames kept per {@code Throwable}; 0 if the {@code Throwable} itself is kept
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * returns what an event should keep of {@code thrown}
+     */
+    Throwable capture(Throwable thrown) {
+        return maxDepth > 0 ? CapturedThrowable.of(thrown, maxDepth) : thrown;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof ThrowableCapture && maxDepth == ((ThrowableCapture) o).maxDepth;
+    }
+
+    @Override
+    public int hashCode() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return maxDepth == 0 ? "full" : "truncated(" + maxDepth + ")";
+    }
+}
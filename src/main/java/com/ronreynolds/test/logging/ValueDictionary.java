@@ -0,0 +1,64 @@
+package com.ronreynolds.test.logging;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * assigns each distinct value a dense {@code int} id so a column can hold the id instead of a reference (see
+ * {@link EventColumns}); ids are never reassigned so a value's id is the same for the life of the dictionary.
+ * <p>
+ * looking up a known value is one {@code ConcurrentHashMap.get()}; only a new value takes the lock.
+ */
+final class ValueDictionary<T> {
+    private final Map<T, Integer> ids = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // values by id; replaced (never changed below size) when it grows so readers can use whichever array they see
+    private volatile Object[] values = new Object[16];
+    private int size;
+
+    /**
+     * returns the id of {@code value} (assigning one if it's new); -1 for {@code null}
+     */
+    int idOf(T value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value);
+        return id != null ? id : add(value);
+    }
+
+    /**
+     * returns the value whose id is {@code id}; {@code null} for -1
+     */
+    @SuppressWarnings("unchecked")
+    T valueOf(int id) {
+        return id >= 0 ? (T) values[id] : null;
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    private int add(T value) {
+        SpinWait.lock(lock);
+        try {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            Object[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = value;
+            values = current;
+            // published after the value so whoever gets the id can read it
+            ids.put(value, size);
+            return size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.ronreynolds.test.logging;
+
+/**
+ * the parts of {@code Thread}'s API that changed with virtual threads; the Java 21 version of
+ * {@code src/main/java/.../ThreadIdentity} (loaded from the multi-release jar's {@code META-INF/versions/21})
+ */
+final class ThreadIdentity {
+    private ThreadIdentity() {
+    }
+
+    static long id(Thread thread) {
+        return thread.threadId();  // getId() is deprecated (and overridable)
+    }
+
+    static boolean isVirtual(Thread thread) {
+        return thread.isVirtual();
+    }
+}
@@ -6,11 +6,23 @@ import org.slf4j.Marker;
 import org.slf4j.event.Level;
 import org.slf4j.helpers.BasicMDCAdapter;
 import org.slf4j.helpers.BasicMarkerFactory;
+import org.slf4j.helpers.MessageFormatter;
 import org.slf4j.helpers.NOPMDCAdapter;
 
 import java.lang.reflect.Field;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -156,6 +168,789 @@ class TestLoggerTest {
                 .hasMessageContaining("Expecting actual not to be empty");
     }
 
+    @Test
+    void concurrentLogging_keepsEveryEvent() throws InterruptedException {
+        TestLogger concurrentLog = new TestLogger("concurrent");
+        int threadCount = 16;
+        int eventsPerThread = 5_000;
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; ++i) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < eventsPerThread; ++j) {
+                    concurrentLog.info("event {}", j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(concurrentLog, Level.INFO).hasSize(threadCount * eventsPerThread);
+        assertThat(concurrentLog.getAllEvents()).isSortedAccordingTo(LogEvent.chronologicalOrder());
+
+        concurrentLog.clearEventsAtLevel(Level.INFO);
+        assertThat(concurrentLog, Level.INFO).isEmpty();
+        concurrentLog.info("after clear");
+        assertThat(concurrentLog, Level.INFO).hasSize(1).first().hasFormattedMessage("after clear");
+    }
+
+    @Test
+    void unchangedMdc_sharesContextMapSnapshot() {
+        TestLogger mdcLog = new TestLogger("mdc");
+        try (var ignore = MDC.putCloseable("tenant", "42")) {
+            mdcLog.info("first");
+            mdcLog.info("second");
+            MDC.put("tenant", "43");
+            mdcLog.info("third");
+        }
+        mdcLog.info("fourth");
+
+        List<LogEvent> events = mdcLog.getEventsAtLevel(Level.INFO);
+        assertThat(events.get(0).getContextMap()).isSameAs(events.get(1).getContextMap());
+        LogEventAssert.assertThat(events.get(1)).contextMapContainsOnly("tenant", "42");
+        LogEventAssert.assertThat(events.get(2)).contextMapContainsOnly("tenant", "43");
+        LogEventAssert.assertThat(events.get(3)).contextMapMatches(Map::isEmpty).contextMapDoesNotContain("tenant");
+        assertThrows(UnsupportedOperationException.class, () -> events.get(0).getContextMap().put("tenant", "44"));
+    }
+
+    @Test
+    void retentionPolicy_keepsTailAndCountsDropped() {
+        TestLogger boundedLog = new TestLogger("bounded").setRetentionPolicy(RetentionPolicy.lastEvents(3));
+        for (int i = 0; i < 5; ++i) {
+            boundedLog.info("info {}", i);
+        }
+        boundedLog.warn("warn");
+        assertThat(boundedLog.getAllEvents()).extracting(LogEvent::getFormattedMessage)
+                                             .containsExactly("info 3", "info 4", "warn");
+        assertThat(boundedLog.getDroppedEventCount(Level.INFO)).isEqualTo(3);
+        assertThat(boundedLog.getDroppedEventCount()).isEqualTo(3);
+        assertThat(boundedLog, Level.WARN).isNotTruncated().hasSize(1);
+        var truncatedAssert = assertThat(boundedLog, Level.INFO);
+        assertThat(assertThrows(AssertionError.class, truncatedAssert::isNotTruncated))
+                .hasMessageContaining("3 earlier events were dropped");
+        assertThat(assertThrows(AssertionError.class, () -> truncatedAssert.hasSize(5)))
+                .hasMessageContaining("truncated tail");
+
+        boundedLog.clearEventsAtLevel(Level.INFO);
+        assertThat(boundedLog, Level.INFO).isEmpty();
+        assertThat(boundedLog.getDroppedEventCount(Level.INFO)).isZero();
+        assertThat(boundedLog, Level.WARN).hasSize(1);
+
+        boundedLog.setRetentionPolicy(RetentionPolicy.lastEventsPerLevel(2));
+        for (int i = 0; i < 4; ++i) {
+            boundedLog.info("info {}", i);
+        }
+        assertThat(boundedLog, Level.INFO).extracting(LogEvent::getFormattedMessage).containsExactly("info 2", "info 3");
+        assertThat(boundedLog, Level.WARN).hasSize(1);
+        assertThat(boundedLog.getDroppedEventCount(Level.INFO)).isEqualTo(2);
+    }
+
+    @Test
+    void retentionPolicy_withinEvictsOldEvents() throws InterruptedException {
+        TestLogger windowLog = new TestLogger("window").setRetentionPolicy(RetentionPolicy.within(Duration.ofMillis(50), 10));
+        windowLog.info("old");
+        Thread.sleep(100);
+        windowLog.info("new");
+        assertThat(windowLog, Level.INFO).hasSize(1).first().hasFormattedMessage("new");
+        assertThat(windowLog.getDroppedEventCount()).isEqualTo(1);
+    }
+
+    @Test
+    void asyncEventDispatcher_deliversBatchesOffTheLoggingThread() {
+        List<LogEvent> seen = Collections.synchronizedList(new ArrayList<>());
+        Set<String> consumerThreads = ConcurrentHashMap.newKeySet();
+        TestLogger asyncLog = new TestLogger("async");
+        try (var dispatcher = new AsyncEventDispatcher(batch -> {
+            consumerThreads.add(Thread.currentThread().getName());
+            seen.addAll(batch);
+        }, 16, 4, AsyncEventDispatcher.Backpressure.BLOCK)) {
+            asyncLog.setOnEvent(dispatcher);
+            for (int i = 0; i < 100; ++i) {
+                asyncLog.info("event {}", i);
+            }
+            dispatcher.flush();
+            assertThat(dispatcher.awaitQuiescence(Duration.ofSeconds(1))).isTrue();
+            assertThat(seen).containsExactlyElementsOf(asyncLog.getEventsAtLevel(Level.INFO));
+            assertThat(dispatcher.getDeliveredCount()).isEqualTo(100);
+            assertThat(consumerThreads).doesNotContain(Thread.currentThread().getName());
+        }
+
+        try (var failing = AsyncEventDispatcher.of(batch -> {
+            throw new IllegalArgumentException("consumer failed");
+        })) {
+            asyncLog.setOnEvent(failing);
+            asyncLog.info("boom");
+            assertThat(assertThrows(IllegalStateException.class, failing::flush))
+                    .hasRootCauseInstanceOf(IllegalArgumentException.class);
+        }
+
+        // a failed assertion in the consumer is rethrown as itself and doesn't stop the dispatcher
+        List<LogEvent> asserted = Collections.synchronizedList(new ArrayList<>());
+        var asserting = AsyncEventDispatcher.of(batch -> {
+            batch.forEach(event -> assertThat(event.getFormattedMessage()).isNotEqualTo("bad"));
+            asserted.addAll(batch);
+        });
+        asyncLog.setOnEvent(asserting);
+        asyncLog.info("bad");
+        assertThrows(AssertionError.class, asserting::flush);
+        asyncLog.info("good");
+        asserting.close();  // delivers what's queued
+        assertThat(asserted).extracting(LogEvent::getFormattedMessage).containsExactly("good");
+        // a closed dispatcher left installed doesn't fail the logging thread; it counts what it's handed as dropped
+        asyncLog.info("after close");
+        assertThat(asserting.getDroppedCount()).isEqualTo(1);
+        assertThat(asserted).hasSize(1);
+        asyncLog.setOnEvent(null);
+    }
+
+    @Test
+    void loggerLevels_areInheritedByName() {
+        TestLogger dao = new TestLogger("com.acme.db.Dao");
+        TestLogger daoRow = new TestLogger("com.acme.db.Dao$Row");
+        TestLogger web = new TestLogger("com.acme.web.Controller");
+        Level defaultLevel = web.getLogLevel();
+        try {
+            TestLogger.setLoggerLevel("com.acme", Level.WARN);
+            TestLogger.setLoggerLevel("com.acme.db", Level.DEBUG);
+            assertThat(dao.getLogLevel()).isSameAs(Level.DEBUG);
+            assertThat(dao.isDebugEnabled()).isTrue();
+            assertThat(daoRow.getLogLevel()).isSameAs(Level.DEBUG);
+            assertThat(web.getLogLevel()).isSameAs(Level.WARN);
+            assertThat(web.isInfoEnabled()).isFalse();
+
+            daoRow.setLogLevel(Level.ERROR);
+            assertThat(daoRow.isWarnEnabled()).isFalse();
+            assertThat(dao.isDebugEnabled()).isTrue();
+
+            TestLogger.setLoggerLevel("com.acme.db", null);
+            assertThat(dao.getLogLevel()).isSameAs(Level.WARN);
+        } finally {
+            TestLogger.resetLoggerLevels();
+        }
+        assertThat(web.getLogLevel()).isSameAs(defaultLevel);
+        assertThat(daoRow.getLogLevel()).isSameAs(Level.ERROR);
+    }
+
+    @Test
+    void formattedMessage_matchesMessageFormatter() {
+        Object[][] argLists = {null, {}, {1}, {1, "two"}, {null, new int[]{3, 4}, new Object[]{"five", 6}}, {7, new Throwable()}};
+        String[] templates = {"plain", "{}", "a {} b {}", "{} {} {} {}", "escaped \\{} then {}", "double \\\\{} then {}",
+                "{}{}", "{ } {} }{", "trailing \\"};
+        for (String template : templates) {
+            for (Object[] args : argLists) {
+                LogEvent event = new LogEvent(Level.INFO, "fmt", null, template, args, null);
+                String expected = MessageFormatter.arrayFormat(template, event.getMessageArgs()).getMessage();
+                assertThat(event.getFormattedMessage()).as("%s %s", template, Arrays.deepToString(args)).isEqualTo(expected);
+                // memoized
+                assertThat(event.getFormattedMessage()).isSameAs(event.getFormattedMessage());
+            }
+        }
+    }
+
+    @Test
+    void chronologicalLog_clearKeepsOtherLevelsInOrder() {
+        TestLogger first = TestLogger.getLogger("chronological.first");
+        TestLogger second = TestLogger.getLogger("chronological.second");
+        for (int i = 0; i < 10; ++i) {
+            first.info("info {}", i);
+            first.warn("warn {}", i);
+            second.warn("other {}", i);
+        }
+        first.clearEventsAtLevel(Level.INFO);
+        first.info("after clear");
+        assertThat(first.getAllEvents()).hasSize(11)
+                                        .isSortedAccordingTo(LogEvent.chronologicalOrder())
+                                        .last().hasFormattedMessage("after clear");
+        assertThat(first, Level.WARN).hasSize(10);
+
+        // a k-way merge of each logger's (already chronological) events
+        List<LogEvent> allWarnings = TestLogger.getAllEventsAtLevel(Level.WARN).stream()
+                                               .filter(event -> event.getLoggerName().startsWith("chronological."))
+                                               .collect(Collectors.toList());
+        assertThat(allWarnings).hasSize(20).isSortedAccordingTo(LogEvent.chronologicalOrder());
+        assertThat(allWarnings.get(1).getLoggerName()).isEqualTo("chronological.second");
+        first.reset();
+        second.reset();
+    }
+
+    @Test
+    void eventQuery_usesIndexesAndMatchesEveryCondition() {
+        Marker audit = new BasicMarkerFactory().getMarker("AUDIT");
+        TestLogger billing = TestLogger.getLogger("query.acme.Billing");
+        TestLogger shipping = TestLogger.getLogger("query.acme$Shipping");
+        TestLogger lookalike = TestLogger.getLogger("query.acmeco.Billing");
+        for (int i = 0; i < 100; ++i) {
+            billing.info("invoice {}", i);
+            lookalike.warn(audit, "lookalike {}", i);
+        }
+        try (var ignore = MDC.putCloseable("tenant", "42")) {
+            billing.warn(audit, "audited {}", 1);
+            shipping.warn(audit, "audited {}", 2);
+            shipping.warn("not audited");
+        }
+        billing.warn(audit, "other tenant");
+
+        EventQuery query = TestLogger.query().fromLogger("query.acme").atLevel(Level.WARN).withMarker("AUDIT")
+                                     .withMdc("tenant", "42");
+        assertThat(query.count()).isEqualTo(2);
+        assertThat(query).hasSize(2)
+                         .isSortedAccordingTo(LogEvent.chronologicalOrder())
+                         .last().hasLoggerName("query.acme$Shipping");
+        assertThat(query.explain()).contains("2 of", "query.acme.Billing: lookup", "then filter");
+
+        // indexes are brought up to date by later queries (and forget cleared events)
+        shipping.warn(audit, "audited later");
+        assertThat(TestLogger.query().fromLogger("query.acme$Shipping").withMarker("AUDIT").list()).hasSize(2);
+        shipping.clearEventsAtLevel(Level.WARN);
+        assertThat(TestLogger.query().fromLogger("query.acme$Shipping").withMarker("AUDIT").count()).isZero();
+        assertThat(EventQuery.of(billing).matching(event -> event.getMessage().startsWith("invoice")).stream()
+                             .map(LogEvent::getFormattedMessage)).startsWith("invoice 0", "invoice 1");
+        Stream.of(billing, shipping, lookalike).forEach(TestLogger::reset);
+    }
+
+    @Test
+    void captureScope_isolatesEventsIncludingPooledThreads() throws Exception {
+        TestLogger scopedLog = TestLogger.getLogger("scoped");
+        scopedLog.info("outside");
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        pool.submit(() -> scopedLog.info("pool warm-up")).get();  // so the pool's thread predates (and can't inherit) the scope
+        ExecutorService lazyPool = Executors.newSingleThreadExecutor();
+        try (CaptureScope scope = CaptureScope.open()) {
+            lazyPool.submit(() -> scopedLog.info("lazy pool")).get();   // its thread is started in (and inherits) the scope
+            scopedLog.info("inside");
+            Thread child = new Thread(() -> scopedLog.info("child thread"));
+            child.start();
+            child.join();
+            scope.wrap(pool).submit(() -> scopedLog.info("pooled")).get();
+            pool.submit(() -> scopedLog.info("unwrapped")).get();
+            assertThat(scopedLog, Level.INFO).extracting(LogEvent::getFormattedMessage)
+                                             .containsExactly("lazy pool", "inside", "child thread", "pooled");
+
+            TestLogger.resetAll();
+            assertThat(scopedLog, Level.INFO).isEmpty();
+            // reading (or resetting) a logger that hasn't logged in the scope doesn't create a store for it
+            TestLogger idleLog = TestLogger.getLogger("scoped.idle");
+            assertThat(idleLog.getAllEvents()).isEmpty();
+            assertThat(TestLogger.getAllEventStatistics().getCount()).isZero();
+            assertThat(scope.peekStore(idleLog)).isInstanceOf(EmptyEventStore.class);
+            lazyPool.submit(() -> scopedLog.info("lazy pool in scope")).get();
+
+            // a root scope opened by a thread that inherited this scope (e.g. a JUnit worker) isn't nested in it
+            lazyPool.submit(() -> {
+                try (CaptureScope root = CaptureScope.openRoot()) {
+                    scopedLog.info("in root scope");
+                    assertThat(scopedLog, Level.INFO).extracting(LogEvent::getFormattedMessage).containsExactly("in root scope");
+                }
+                assertThat(CaptureScope.current()).isNull();
+            }).get();
+            assertThat(scopedLog, Level.INFO).extracting(LogEvent::getFormattedMessage).containsExactly("lazy pool in scope");
+        } finally {
+            pool.shutdown();
+        }
+        // the lazily-started thread's inherited scope is closed (and its root scope cleared it) so it captures into the
+        // logger's own store
+        lazyPool.submit(() -> assertThat(CaptureScope.current()).isNull()).get();
+        lazyPool.submit(() -> scopedLog.info("lazy pool after close")).get();
+        lazyPool.shutdown();
+        assertThat(CaptureScope.current()).isNull();
+        assertThat(scopedLog, Level.INFO).extracting(LogEvent::getFormattedMessage)
+                                         .containsExactly("outside", "pool warm-up", "unwrapped", "lazy pool after close");
+        scopedLog.reset();
+    }
+
+    @Test
+    void callerCapture_recordsWhereTheLogCallCameFrom() {
+        TestLogger callerLog = new TestLogger("caller");
+        callerLog.info("not captured");
+        callerLog.setCallerCapture(CallerCapture.always());
+        callerLog.info("captured");
+        callerLog.atWarn().log("captured via the fluent api");
+        callerLog.setCallerCapture(CallerCapture.sampled(1_000_000));
+        callerLog.info("most likely not captured");
+
+        List<LogEvent> events = callerLog.getAllEvents();
+        assertThat(events.get(0).getSource()).isNull();
+        LogEventAssert.assertThat(events.get(1)).hasSourceClass(TestLoggerTest.class)
+                      .hasSourceMethod("callerCapture_recordsWhereTheLogCallCameFrom");
+        LogEventAssert.assertThat(events.get(2)).hasSourceClass(TestLoggerTest.class.getName());
+        assertThat(CallerCapture.sampled(1)).isSameAs(CallerCapture.always());
+        assertThrows(IllegalArgumentException.class, () -> CallerCapture.sampled(0));
+    }
+
+    @Test
+    void throwableCapture_truncatedKeepsABoundedCopy() {
+        TestLogger errorLog = new TestLogger("errors").setThrowableCapture(ThrowableCapture.truncated(2));
+        RuntimeException thrown = new RuntimeException("outer", new IllegalStateException("inner"));
+        thrown.addSuppressed(new IllegalArgumentException("suppressed"));
+        errorLog.error("failed", thrown);
+
+        LogEvent event = errorLog.getEventsAtLevel(Level.ERROR).get(0);
+        assertThat(event.getThrown()).isInstanceOf(CapturedThrowable.class)
+                                     .hasMessage("outer")
+                                     .hasToString("java.lang.RuntimeException: outer");
+        CapturedThrowable captured = (CapturedThrowable) event.getThrown();
+        assertThat(captured.getOriginalClassName()).isEqualTo(RuntimeException.class.getName());
+        assertThat(captured.getStackTrace()).hasSize(2).containsExactly(thrown.getStackTrace()[0], thrown.getStackTrace()[1]);
+        assertThat(captured.getOmittedFrameCount()).isEqualTo(thrown.getStackTrace().length - 2);
+        assertThat(captured.getCause()).hasToString("java.lang.IllegalStateException: inner");
+        assertThat(captured.getSuppressed()).singleElement().hasToString("java.lang.IllegalArgumentException: suppressed");
+        assertThrows(UnsupportedOperationException.class, () -> captured.setStackTrace(new StackTraceElement[0]));
+        // the source is still taken from the original
+        assertThat(event.getSource()).isEqualTo(thrown.getStackTrace()[0]);
+        // rendered once
+        assertThat(event.toString()).endsWith("\n\t...").isEqualTo(event.toString());
+        assertThat(event.getThrownData()).isSameAs(event.getThrownData());
+    }
+
+    @Test
+    void eventTiming_assertsSpanAndLatency() throws InterruptedException {
+        TestLogger timedLog = new TestLogger("timed");
+        timedLog.info("request received");
+        Thread.sleep(5);
+        timedLog.info("response sent");
+
+        List<LogEvent> events = timedLog.getAllEvents();
+        LogEvent received = events.get(0);
+        assertThat(received.getTimestamp().toEpochMilli()).isEqualTo(received.getTimeMillis());
+        LogEventListAssert.assertThat(events).eventsWithin(Duration.ofMinutes(1));
+        assertThrows(AssertionError.class, () -> LogEventListAssert.assertThat(events).eventsWithin(Duration.ofMillis(1)));
+        LogEventListAssert.assertThat(events).latencyBetween(received, events.get(1))
+                          .isGreaterThanOrEqualTo(Duration.ofMillis(5))
+                          .isLessThanOrEqualTo(Duration.ofMinutes(1));
+        LogEventListAssert.assertThat(events).latencyBetween(event -> event.getMessage().startsWith("request"),
+                                                             event -> event.getMessage().startsWith("response"))
+                          .isGreaterThanOrEqualTo(Duration.ofMillis(5));
+    }
+
+    @Test
+    void spillToDisk_readsSpilledEventsBackTransparently() throws Exception {
+        Path spillDirectory = Files.createTempDirectory("spill");
+        TestLogger spillLog = new TestLogger("spill").setRetentionPolicy(RetentionPolicy.spillToDisk(10, spillDirectory));
+        Marker marker = new BasicMarkerFactory().getMarker("AUDIT");
+        for (int i = 0; i < 25; ++i) {
+            spillLog.info(marker, "info {} {}", i, new int[]{i});
+        }
+        spillLog.error("failed", new IllegalStateException("boom", new RuntimeException("cause")));
+        ((SpillingEventStore) spillLog.ownEventStore()).awaitSpill();   // full heap buffers are spilled in the background
+        try (Stream<Path> segments = Files.list(spillDirectory)) {
+            assertThat(segments).isNotEmpty();
+        }
+
+        List<LogEvent> events = spillLog.getAllEvents();
+        assertThat(events).hasSize(26).isSortedAccordingTo(LogEvent.chronologicalOrder());
+        assertThat(events.get(3).getFormattedMessage()).isEqualTo("info 3 [3]");
+        assertThat(events.get(3)).isEqualTo(spillLog.getAllEvents().get(3));  // decoded again but the same event
+        assertThat(events.get(3).getMarker().contains("AUDIT")).isTrue();
+        assertThat(spillLog, Level.INFO).hasSize(25).first().hasFormattedMessage("info 0 [0]");
+        Throwable thrown = spillLog.getEventsAtLevel(Level.ERROR).get(0).getThrown();
+        assertThat(thrown).hasToString("java.lang.IllegalStateException: boom").hasMessage("boom");
+        assertThat(thrown.getCause()).hasToString("java.lang.RuntimeException: cause");
+
+        spillLog.clearEventsAtLevel(Level.INFO);
+        assertThat(spillLog.getAllEvents()).hasSize(1);
+        spillLog.reset();
+        assertThat(spillLog.getAllEvents()).isEmpty();
+        try (Stream<Path> segments = Files.list(spillDirectory)) {
+            assertThat(segments).isEmpty();
+        }
+        assertThat(events.get(3).getFormattedMessage()).isEqualTo("info 3 [3]");   // lists from before the reset still read
+    }
+
+    @Test
+    void compactRetention_materializesEventsFromColumns() throws InterruptedException {
+        TestLogger compactLog = new TestLogger("compact").setRetentionPolicy(RetentionPolicy.compact());
+        try (var ignore = MDC.putCloseable("tenant", "42")) {
+            compactLog.info("single {}", "arg");
+            compactLog.info("null {}", (Object) null);
+        }
+        Thread worker = new Thread(() -> compactLog.warn("from {} {}", "worker", 1), "worker");
+        worker.start();
+        worker.join();
+        compactLog.error("failed", new IllegalStateException("boom"));
+
+        List<LogEvent> events = compactLog.getAllEvents();
+        assertThat(events).extracting(LogEvent::getFormattedMessage)
+                          .containsExactly("single arg", "null null", "from worker 1", "failed");
+        assertThat(events.get(0).getContextMap()).containsEntry("tenant", "42");
+        assertThat(events.get(0).getContextMap()).isSameAs(events.get(1).getContextMap());   // one dictionary entry
+        assertThat(events.get(0)).isEqualTo(compactLog.getAllEvents().get(0)).isNotSameAs(compactLog.getAllEvents().get(0));
+        assertThat(events.get(2).getThreadName()).isEqualTo("worker");
+        assertThat(events.get(3).getThrown()).hasMessage("boom");
+        assertThat(compactLog, Level.WARN).hasSize(1).first().hasFormattedMessage("from worker 1");
+
+        compactLog.clearEventsAtLevel(Level.INFO);
+        assertThat(compactLog.getAllEvents()).extracting(LogEvent::getFormattedMessage).containsExactly("from worker 1", "failed");
+        compactLog.reset();
+        assertThat(compactLog.getAllEvents()).isEmpty();
+        // the reset starts new dictionaries; lists from before it still decode with the old ones
+        assertThat(events.get(0).getContextMap()).containsEntry("tenant", "42");
+    }
+
+    @Test
+    void templateCatalog_countsEachTemplateByLoggerAndLevel() {
+        TestLogger catalogLog = new TestLogger("catalog");
+        for (int i = 0; i < 5; ++i) {
+            catalogLog.warn("catalog retry {}", i);
+        }
+        catalogLog.info("catalog started");
+        assertThat(catalogLog, Level.WARN).templateLoggedTimes("catalog retry {}", 5).templateNeverLogged("catalog started");
+        assertThat(catalogLog, Level.INFO).templateLoggedTimes("catalog started", 1);
+        assertThat(assertThrows(AssertionError.class, () -> assertThat(catalogLog, Level.WARN).templateLoggedTimes("catalog retry {}", 4)))
+                .hasMessageContaining("logged 5 times");
+        LogEventListAssert.assertThat(catalogLog.getAllEvents()).templateLoggedTimes("catalog retry {}", 5);
+        catalogLog.assertTemplateLoggedTimes(Level.WARN, "catalog retry {}", 5)
+                  .assertTemplateLoggedTimes(Level.INFO, "catalog retry {}", 0);
+        assertThat(assertThrows(AssertionError.class, () -> catalogLog.assertTemplateLoggedTimes(Level.WARN, "catalog retry {}", 4)))
+                .hasMessageContaining("logged 5 times");
+        try (CaptureScope ignored = CaptureScope.open()) {
+            assertThrows(IllegalStateException.class,
+                         () -> catalogLog.assertTemplateLoggedTimes(Level.WARN, "catalog retry {}", 5));
+        }
+
+        TemplateStats stats = TemplateCatalog.get("catalog retry {}");
+        assertThat(stats.getCount("catalog", Level.WARN)).isEqualTo(5);
+        assertThat(stats.getLoggerNames()).contains("catalog");
+        List<LogEvent> retries = catalogLog.getEventsAtLevel(Level.WARN);
+        assertThat(stats.getFirstLogged("catalog", Level.WARN)).isEqualTo(retries.get(0).getTimestamp());
+        assertThat(stats.getLastLogged("catalog", Level.WARN)).isEqualTo(retries.get(4).getTimestamp());
+        assertThat(stats.getFirstLogged("catalog", Level.INFO)).isNull();
+        assertThat(TemplateCatalog.topTemplates(Integer.MAX_VALUE)).contains(stats);
+        assertThat(TemplateCatalog.report(Integer.MAX_VALUE)).contains("\"catalog retry {}\"");
+
+        catalogLog.clearEventsAtLevel(Level.WARN);
+        assertThat(catalogLog, Level.WARN).templateNeverLogged("catalog retry {}");
+        catalogLog.assertTemplateLoggedTimes(Level.WARN, "catalog retry {}", 0);
+        assertThat(stats.getFirstLogged("catalog", Level.WARN)).isNull();
+        assertThat(stats.getLastLogged("catalog", Level.WARN)).isNull();
+        assertThat(catalogLog, Level.INFO).templateLoggedTimes("catalog started", 1);
+    }
+
+    @Test
+    void captureMetrics_countsCaptureAndOnEventTime() {
+        TestLogger metricsLog = TestLogger.getLogger("metrics");
+        try (NoThrowAutoCloseable ignored = metricsLog.resetOnClose()) {
+            long capturedBefore = metricsLog.getCapturedEventCount(Level.WARN);
+            long onEventBefore = CaptureMetrics.get().getOnEventCount();
+            metricsLog.setOnEvent(event -> {
+            });
+            metricsLog.warn("metrics one");
+            metricsLog.warn("metrics two");
+            metricsLog.info("metrics three");
+            assertThat(metricsLog.getCapturedEventCount(Level.WARN)).isEqualTo(capturedBefore + 2);
+            assertThat(metricsLog.getRetainedBytesEstimate()).isPositive();
+
+            CaptureMetrics metrics = CaptureMetrics.get();
+            assertThat(metrics.getCapturedEventCountsByLogger().get("metrics")).isGreaterThanOrEqualTo(3);
+            assertThat(metrics.getCapturedEventCountsByLevel().get("WARN")).isGreaterThanOrEqualTo(2);
+            assertThat(metrics.getOnEventCount()).isGreaterThanOrEqualTo(onEventBefore + 3);
+            assertThat(metrics.getRetainedEventCount()).isGreaterThanOrEqualTo(3);
+            assertThat(metrics.toString()).contains("captured=");
+            assertThat(CaptureMetrics.registerMBean()).isTrue();
+
+            metricsLog.reset();     // clears the events but not what was captured
+            assertThat(metricsLog.getCapturedEventCount(Level.WARN)).isEqualTo(capturedBefore + 2);
+        }
+    }
+
+    @Test
+    void awaitEvent_wakesWhenAsyncCodeLogs() throws Exception {
+        TestLogger awaitLog = new TestLogger("await");
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            pool.submit(() -> {
+                Thread.sleep(50);
+                awaitLog.info("job {} started", 1);
+                awaitLog.warn("job {} slow", 1);
+                awaitLog.info("job {} done", 1);
+                return null;
+            });
+            LogEvent done = awaitLog.awaitEvent(event -> "job {} done".equals(event.getMessage()), Duration.ofSeconds(10));
+            assertThat(done).isNotNull();
+            assertThat(done.getFormattedMessage()).isEqualTo("job 1 done");
+            assertThat(awaitLog.awaitCount(Level.INFO, 2, Duration.ZERO)).isTrue();     // already captured
+            assertThat(awaitLog.awaitCount(Level.INFO, 3, Duration.ofMillis(20))).isFalse();
+            assertThat(awaitLog.awaitEvent(event -> event.getLevel() == Level.ERROR, Duration.ofMillis(20))).isNull();
+
+            pool.submit(() -> awaitLog.warn("job {} slow", 2));
+            assertThat(awaitLog, Level.WARN).awaitCount(2, Duration.ofSeconds(10))
+                                            .awaitEvent(event -> "job 2 slow".equals(event.getFormattedMessage()),
+                                                        Duration.ofSeconds(10))
+                                            .hasSize(2);
+            assertThat(assertThrows(AssertionError.class,
+                                    () -> assertThat(awaitLog, Level.ERROR).awaitCount(1, Duration.ofMillis(20))))
+                    .hasMessageContaining("within");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void logEvent_recordsThreadIdentityIncludingVirtualThreads() throws Exception {
+        TestLogger threadLog = new TestLogger("threads");
+        threadLog.info("on the test thread");
+        LogEvent platformEvent = threadLog.getAllEvents().get(0);
+        assertThat(platformEvent.getThreadName()).isEqualTo(Thread.currentThread().getName());
+        assertThat(platformEvent.getThreadId()).isEqualTo(Thread.currentThread().getId());
+        assertThat(platformEvent.isVirtualThread()).isFalse();
+
+        ExecutorService virtualThreads;
+        try {   // Java 21+ (the tests are compiled for Java 11)
+            virtualThreads = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        try {
+            virtualThreads.submit(() -> threadLog.warn("on a virtual thread")).get();
+            virtualThreads.submit(() -> threadLog.warn("on another virtual thread")).get();
+        } finally {
+            virtualThreads.shutdown();
+        }
+        List<LogEvent> virtualEvents = threadLog.getEventsAtLevel(Level.WARN);
+        assertThat(virtualEvents.get(0).getThreadId()).isNotEqualTo(virtualEvents.get(1).getThreadId());
+        if (virtualEvents.get(0).isVirtualThread()) {   // only the multi-release jar's Java 21 classes can tell
+            assertThat(virtualEvents).extracting(LogEvent::getThreadName)
+                                     .containsExactly("virtual-" + virtualEvents.get(0).getThreadId(),
+                                                      "virtual-" + virtualEvents.get(1).getThreadId());
+        }
+    }
+
+    @Test
+    void capturePolicy_skipsCallsBeforeTheyAreCaptured() {
+        TestLogger loadLog = new TestLogger("load").setLogLevel(Level.TRACE)
+                                                   .setCapturePolicy(CapturePolicy.sampled(10).atOrBelow(Level.DEBUG));
+        AtomicInteger onEventCount = new AtomicInteger();
+        loadLog.setOnEvent(event -> onEventCount.incrementAndGet());
+        for (int i = 0; i < 1000; ++i) {
+            loadLog.debug("request {}", i);
+            loadLog.info("request {} done in {}ms", i, 5);
+        }
+        int sampled = loadLog.getEventsAtLevel(Level.DEBUG).size();
+        assertThat(sampled).isBetween(40, 200);     // each kept with a probability of 1/10 (100 expected; sd ~9.5)
+        assertThat(loadLog.getEventsAtLevel(Level.INFO)).hasSize(1000);    // above DEBUG so always captured
+        assertThat(onEventCount).hasValue(1000 + sampled);
+        assertThat(loadLog.getSkippedEventCount(Level.DEBUG)).isEqualTo(1000 - sampled);
+        assertThat(loadLog.getSkippedEventCount()).isEqualTo(1000 - sampled);
+        assertThat(loadLog.getCapturedEventCount()).isEqualTo(1000 + sampled);
+
+        loadLog.setCapturePolicy(CapturePolicy.firstPerTemplate(2));
+        for (int i = 0; i < 5; ++i) {
+            loadLog.warn("retry {}", i);
+            loadLog.warn("giving up on {} after {}", "job", i, new IllegalStateException("boom"));
+        }
+        assertThat(loadLog.getEventsAtLevel(Level.WARN)).extracting(LogEvent::getFormattedMessage)
+                                                        .containsExactly("retry 0", "giving up on job after 0", "retry 1",
+                                                                         "giving up on job after 1");
+        assertThat(loadLog.getEventsAtLevel(Level.WARN).get(1).getThrown()).isInstanceOf(IllegalStateException.class);
+        assertThat(loadLog.getSkippedEventCount(Level.WARN)).isEqualTo(6);
+        loadLog.reset();    // starts the policy afresh
+        loadLog.warn("retry {}", 5);
+        assertThat(loadLog.getEventsAtLevel(Level.WARN)).hasSize(1);
+        assertThat(loadLog.getSkippedEventCount()).isZero();
+
+        loadLog.setCapturePolicy(CapturePolicy.rateLimited(5));
+        for (int i = 0; i < 50; ++i) {
+            loadLog.error("overloaded");
+        }
+        assertThat(loadLog.getEventsAtLevel(Level.ERROR)).hasSizeBetween(5, 6);  // a second's worth (plus any refill)
+        assertThat(loadLog.getSkippedEventCount(Level.ERROR)).isBetween(44L, 45L);
+
+        assertThat(CapturePolicy.sampled(1)).isSameAs(CapturePolicy.all());
+        assertThat(CapturePolicy.firstPerTemplate(3).atOrBelow(Level.DEBUG)).hasToString("firstPerTemplate(3).atOrBelow(DEBUG)")
+                                                                           .isEqualTo(CapturePolicy.firstPerTemplate(3)
+                                                                                                   .atOrBelow(Level.DEBUG));
+        assertThrows(IllegalArgumentException.class, () -> CapturePolicy.rateLimited(0));
+    }
+
+    @Test
+    void captureFilter_skipsCallsBeforeEventsAreCreated() {
+        Marker audit = new BasicMarkerFactory().getDetachedMarker("audit");
+        TestLogger filteredLog = new TestLogger("filtered").setCaptureFilter(CaptureFilter.marker(audit)
+                                                                                          .or(CaptureFilter.mdc("tenant", "acme"))
+                                                                                          .or(CaptureFilter.atOrAbove(Level.ERROR)));
+        List<Object[]> argsSeen = new ArrayList<>();
+        filteredLog.info("no marker or tenant {}", 1);
+        filteredLog.info(audit, "audited {}", 2);
+        try (var ignore = MDC.putCloseable("tenant", "acme")) {
+            filteredLog.info("acme {} {}", 3, 4);
+        }
+        try (var ignore = MDC.putCloseable("tenant", "other")) {
+            filteredLog.warn("other {} {} {}", 5, 6, 7);
+            filteredLog.error("failed {}", 8, new IllegalStateException("boom"));
+        }
+        assertThat(filteredLog.getAllEvents()).extracting(LogEvent::getFormattedMessage)
+                                              .containsExactly("audited 2", "acme 3 4", "failed 8");
+        assertThat(filteredLog.getEventsAtLevel(Level.ERROR).get(0).getThrown()).isInstanceOf(IllegalStateException.class);
+
+        try {
+            TestLogger.setDefaultCaptureFilter(CaptureFilter.templates("kept {}"));
+            filteredLog.setCaptureFilter(null);     // uses the default
+            filteredLog.info("kept {}", 9);
+            filteredLog.info("dropped {}", 10);
+            assertThat(filteredLog, Level.INFO).hasSize(3).last().hasFormattedMessage("kept 9");
+
+            filteredLog.setCaptureFilter((level, marker, template, args) -> {
+                argsSeen.add(args.clone());
+                return args.length > 0 && args[0] instanceof Integer && (Integer) args[0] > 100;
+            });
+            filteredLog.info("no args");
+            filteredLog.info("small {}", 11);
+            filteredLog.info("big {} and {}", 101, "more", new RuntimeException("not an arg"));
+            assertThat(filteredLog, Level.INFO).hasSize(4).last().hasFormattedMessage("big 101 and more");
+            filteredLog.info("failed {}", new IllegalStateException("a lone Throwable arg isn't an arg either"));
+            filteredLog.info("small {} failed", 12, new IllegalStateException("nor is a trailing one"));
+            assertThat(argsSeen).containsExactly(new Object[0], new Object[]{11}, new Object[]{101, "more"}, new Object[0],
+                                                 new Object[]{12});
+            assertThat(filteredLog.getSkippedEventCount()).isZero();    // filtered calls aren't the policy's to count
+        } finally {
+            TestLogger.setDefaultCaptureFilter(null);
+        }
+    }
+
+    @Test
+    void eventLists_areSnapshotsUnchangedByLaterEventsAndClears() {
+        TestLogger snapshotLog = new TestLogger("snapshots");
+        for (int i = 0; i < 100; ++i) {
+            snapshotLog.info("info {}", i);
+            snapshotLog.warn("warn {}", i);
+        }
+        List<LogEvent> infoEvents = snapshotLog.getEventsAtLevel(Level.INFO);
+        List<LogEvent> allEvents = snapshotLog.getAllEvents();
+        Map<Level, List<LogEvent>> eventMap = snapshotLog.getLogEventMap();
+        var infoAssert = assertThat(snapshotLog, Level.INFO);
+
+        snapshotLog.info("after the snapshots");
+        snapshotLog.clearEventsAtLevel(Level.WARN);
+        assertThat(infoEvents).hasSize(100).last().hasFormattedMessage("info 99");
+        assertThat(allEvents).hasSize(200).isSortedAccordingTo(LogEvent.chronologicalOrder());
+        assertThat(eventMap.get(Level.WARN)).hasSize(100);
+        infoAssert.hasSize(100);
+        assertThrows(UnsupportedOperationException.class, () -> infoEvents.add(allEvents.get(0)));
+
+        // a snapshot taken after the clear doesn't see the cleared events
+        assertThat(snapshotLog.getEventsAtLevel(Level.WARN)).isEmpty();
+        assertThat(snapshotLog.getAllEvents()).hasSize(101).noneMatch(event -> event.getLevel() == Level.WARN);
+        assertThat(snapshotLog.getEventsAtLevel(Level.INFO)).startsWith(infoEvents.toArray(new LogEvent[0])).hasSize(101);
+    }
+
+    @Test
+    void containsSequence_matchesCorrelatedStepsInOnePass() {
+        TestLogger sequenceLog = new TestLogger("sequence");
+        String[][] requests = {{"1", "cart {} submitted"}, {"2", "cart {} submitted"}, {"1", "payment {} authorized"},
+                               {"1", "payment {} failed"}, {"2", "payment {} authorized"}, {null, "heartbeat {}"},
+                               {"1", "order {} shipped"}, {"2", "order {} shipped"}};
+        for (String[] request : requests) {
+            try (var ignore = request[0] != null ? MDC.putCloseable("requestId", request[0]) : null) {
+                if (request[1].endsWith("failed")) {
+                    sequenceLog.error(request[1], request[0]);
+                } else {
+                    sequenceLog.info(request[1], request[0]);
+                }
+            }
+        }
+        EventSequence checkout = EventSequence.correlatedBy("requestId")
+                                              .then(EventMatcher.event().hasMessageTemplate("cart {} submitted"))
+                                              .next(EventMatcher.event().hasMessageTemplate("payment {} authorized"))
+                                              .without(EventMatcher.event().isLevel(Level.ERROR))
+                                              .then(EventMatcher.event().hasMessageTemplate("order {} shipped"));
+        LogEventListAssert.assertThat(sequenceLog.getAllEvents()).containsSequence(checkout);
+        assertThat(checkout.find(sequenceLog.getAllEvents())).extracting(LogEvent::getFormattedMessage)
+                                                             .containsExactly("cart 2 submitted", "payment 2 authorized",
+                                                                              "order 2 shipped");
+
+        EventSequence uncorrelated = EventSequence.of()
+                                                  .then(EventMatcher.event().hasMessageTemplate("payment {} authorized"))
+                                                  .without("a heartbeat", event -> event.getMessage().startsWith("heartbeat"))
+                                                  .then(EventMatcher.event().hasMessageTemplate("order {} shipped"));
+        AssertionError failure = assertThrows(AssertionError.class,
+                                              () -> LogEventListAssert.assertThat(sequenceLog.getAllEvents())
+                                                                      .containsSequence(uncorrelated));
+        assertThat(failure).hasMessageContaining("longest partial match: 1 of 2 steps")
+                           .hasMessageContaining("payment 1 authorized")
+                           .hasMessageContaining("excluded a heartbeat arrived");
+        assertThat(sequenceLog, Level.INFO).doesNotContainSequence(uncorrelated)
+                                           .containsSequence(EventSequence.of()
+                                                                          .then(EventMatcher.event().hasMessageTemplate("cart {} submitted"))
+                                                                          .times(2));
+        assertThat(sequenceLog, Level.INFO).doesNotContainSequence(EventSequence.of()
+                                                                                .next(EventMatcher.event().isLevel(Level.INFO))
+                                                                                .times(8));    // only 7 INFO events
+    }
+
+    @Test
+    void allEventStatistics_aggregateEveryLoggerInParallel() throws InterruptedException {
+        // a scope so other tests' events aren't counted; the parallel workers must still read (and reset) the scope's stores
+        try (CaptureScope ignore = CaptureScope.open()) {
+            for (int i = 0; i < 300; ++i) {     // more loggers than the parallel threshold
+                TestLogger aggregateLog = TestLogger.getLogger("aggregate." + i);
+                aggregateLog.warn("warning {}", i);
+                if (i % 3 == 0) {
+                    aggregateLog.error("error {}", i);
+                }
+            }
+            List<LogEvent> warnings = TestLogger.getAllEventsAtLevel(Level.WARN);
+            assertThat(warnings).hasSize(300).isSortedAccordingTo(LogEvent.chronologicalOrder());
+            assertThat(warnings).first().hasFormattedMessage("warning 0");
+
+            EventStatistics stats = TestLogger.getAllEventStatistics();
+            assertThat(stats.getCount()).isEqualTo(400);
+            assertThat(stats.getCountsByLevel()).containsOnly(Map.entry(Level.WARN, 300L), Map.entry(Level.ERROR, 100L));
+            assertThat(stats.getCountsByLogger()).hasSize(300).containsEntry("aggregate.3", 2L);
+            assertThat(stats.getCountsByTemplate()).containsOnly(Map.entry("warning {}", 300L), Map.entry("error {}", 100L));
+            assertThat(stats.getDistinctThreadCount()).isEqualTo(1);
+            assertThat(stats.getFirstEvent().getFormattedMessage()).isEqualTo("warning 0");
+            assertThat(stats.getLastEvent().getFormattedMessage()).isEqualTo("error 297");
+            assertThat(TestLogger.getAllEventStatisticsAtLevel(Level.ERROR).getCount()).isEqualTo(100);
+            assertThat(TestLogger.getLogger("aggregate.3").getEventStatistics().getCount()).isEqualTo(2);
+            assertThat(warnings.stream().parallel().collect(EventStatistics.collector()).getCountsByLogger()).hasSize(300);
+
+            TestLogger.resetAll();
+            assertThat(TestLogger.getAllEventStatistics()).isSameAs(EventStatistics.empty());
+            assertThat(TestLogger.getAllEventsAtLevel(Level.WARN)).isEmpty();
+
+            for (int i = 0; i < 2; ++i) {   // threads are counted by id, not name
+                Thread twin = new Thread(() -> TestLogger.getLogger("aggregate.0").info("twin"), "twin");
+                twin.start();
+                twin.join();
+            }
+            EventStatistics twinStats = TestLogger.getAllEventStatistics();
+            assertThat(twinStats.getDistinctThreadCount()).isEqualTo(2);
+            assertThat(twinStats.getCountsByThreadId()).hasSize(2).containsValues(1L);
+            assertThat(twinStats.getCountsByThread()).containsOnly(Map.entry("twin", 2L));
+            twinStats.getCountsByThreadId().keySet().forEach(id -> assertThat(twinStats.getThreadName(id)).isEqualTo("twin"));
+        }
+    }
+
+    @Test
+    void eventSequences_areUniqueAndOrderEachThreadsEvents() throws InterruptedException {
+        TestLogger sequenceLog = new TestLogger("sequences");
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 3_000; ++j) {   // more than one block of sequence numbers per thread
+                    sequenceLog.info("event {}", j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<LogEvent> events = sequenceLog.getAllEvents();
+        assertThat(events.stream().map(LogEvent::getSequence).distinct().count()).isEqualTo(events.size());
+        Map<String, List<LogEvent>> eventsByThread = events.stream().collect(Collectors.groupingBy(LogEvent::getThreadName));
+        assertThat(eventsByThread).hasSize(threads.length).allSatisfy((threadName, threadEvents) -> {
+            assertThat(threadEvents).extracting(LogEvent::getSequence).isSorted();
+            assertThat(threadEvents).extracting(LogEvent::getFormattedMessage).startsWith("event 0", "event 1")
+                                    .endsWith("event 2999");
+        });
+
+        // the events logged before a clear are hidden whichever thread's block of sequence numbers they came from
+        sequenceLog.clearEventsAtLevel(Level.INFO);
+        sequenceLog.info("after clear");
+        assertThat(sequenceLog, Level.INFO).hasSize(1).first().hasFormattedMessage("after clear");
+        assertThat(sequenceLog.getAllEvents().get(0).getSequence()).isPositive();
+    }
+
     /**
      * used for finding info about classes (class-file location, fields, etc);
      * not part of library's domain so made private